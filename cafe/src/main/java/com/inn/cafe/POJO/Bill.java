@@ -6,15 +6,38 @@ import org.hibernate.annotations.DynamicInsert;
 import org.hibernate.annotations.DynamicUpdate;
 
 import java.io.Serializable;
+import java.time.Instant;
 
 @NamedQuery(name="Bill.getAllBills", query = "select b from Bill b order by b.id desc")
 @NamedQuery(name = "Bill.getBillsByUserName", query = "select b from Bill b where b.createdBy =:username order by b.id desc")
 
+// Keyset pagination for /bill/getBills: the next page starts below the last id of the previous one.
+// The plain versions leave productDetails out.
+@NamedQuery(name = "Bill.getBillsPage", query = "select new com.inn.cafe.wrapper.BillWrapper(b.id, b.uuid, b.name, b.email, b.contactNumber, b.paymentMethod, b.total, b.createdBy) from Bill b where b.id < :cursor order by b.id desc")
+@NamedQuery(name = "Bill.getBillsPageByUserName", query = "select new com.inn.cafe.wrapper.BillWrapper(b.id, b.uuid, b.name, b.email, b.contactNumber, b.paymentMethod, b.total, b.createdBy) from Bill b where b.createdBy =:username and b.id < :cursor order by b.id desc")
+@NamedQuery(name = "Bill.getBillsPageWithDetails", query = "select new com.inn.cafe.wrapper.BillWrapper(b.id, b.uuid, b.name, b.email, b.contactNumber, b.paymentMethod, b.total, b.createdBy, b.productDetails) from Bill b where b.id < :cursor order by b.id desc")
+@NamedQuery(name = "Bill.getBillsPageByUserNameWithDetails", query = "select new com.inn.cafe.wrapper.BillWrapper(b.id, b.uuid, b.name, b.email, b.contactNumber, b.paymentMethod, b.total, b.createdBy, b.productDetails) from Bill b where b.createdBy =:username and b.id < :cursor order by b.id desc")
+
+// Ordered scans of a range of ids, read as a stream by /bill/export
+@NamedQuery(name = "Bill.streamBills", query = "select b from Bill b where b.id between :fromId and :toId order by b.id")
+@NamedQuery(name = "Bill.streamBillsByUserName", query = "select b from Bill b where b.createdBy =:username and b.id between :fromId and :toId order by b.id")
+
+// Bills after the cursor that have no rows in bill_item yet, used to backfill bill_item from productDetails
+@NamedQuery(name = "Bill.getBillsWithoutItems", query = "select b from Bill b where b.id > :cursor and not exists (select i.id from BillItem i where i.billId = b.id) order by b.id")
+
+// Used by the receipt reconciler: which of a chunk of stored receipts still have a bill, and all bills in id order
+@NamedQuery(name = "Bill.getExistingUuids", query = "select b.uuid from Bill b where b.uuid in :uuids")
+@NamedQuery(name = "Bill.getBillsAfter", query = "select new com.inn.cafe.wrapper.BillWrapper(b.id, b.uuid, b.name, b.email, b.contactNumber, b.paymentMethod, b.total, b.createdBy) from Bill b where b.id > :cursor order by b.id")
+
 @Data
 @Entity
 @DynamicUpdate
 @DynamicInsert
-@Table(name = "bill")
+// (createdby, id) serves the per user keyset pagination of /bill/getBills, uuid is how receipts look up their bill
+@Table(name = "bill", indexes = {
+        @Index(name = "idx_bill_createdby_id", columnList = "createdby, id"),
+        @Index(name = "uk_bill_uuid", columnList = "uuid", unique = true)
+})
 
 public class Bill implements Serializable {
 
@@ -53,4 +76,8 @@ public class Bill implements Serializable {
     @Column(name = "createdby")
     private String createdBy;
 
+    // Null for bills saved before this column existed
+    @Column(name = "createdat")
+    private Instant createdAt;
+
 }
@@ -0,0 +1,49 @@
+package com.inn.cafe.POJO;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.io.Serializable;
+
+// One line of a bill, normalised out of Bill.productDetails so sales per product or category can be
+// answered with indexed sql instead of loading and parsing every bill.
+// The foreign keys are plain ids so the rows can be written with jdbc batches (see BillJdbcDao).
+@Data
+@Entity
+@DynamicUpdate
+@DynamicInsert
+@Table(name = "bill_item", indexes = {
+        @Index(name = "idx_bill_item_bill", columnList = "bill_fk"),
+        @Index(name = "idx_bill_item_product", columnList = "product_fk, quantity, subtotal"),
+        @Index(name = "idx_bill_item_category", columnList = "category_fk, quantity, subtotal")
+})
+public class BillItem implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "bill_fk", nullable = false)
+    private Integer billId;
+
+    @Column(name = "product_fk")
+    private Integer productId;
+
+    // Null when the product no longer exists at the time the line is written
+    @Column(name = "category_fk")
+    private Integer categoryId;
+
+    @Column(name = "quantity")
+    private Integer quantity;
+
+    @Column(name = "unitprice")
+    private Double unitPrice;
+
+    @Column(name = "subtotal")
+    private Double subtotal;
+}
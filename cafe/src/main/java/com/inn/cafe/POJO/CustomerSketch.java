@@ -0,0 +1,34 @@
+package com.inn.cafe.POJO;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+// HyperLogLog registers of the customers seen on one day (server time), see UniqueCustomers.
+// 2^hllprecision bytes per day, e.g. 4 KB at the default precision of 12.
+@Data
+@Entity
+@DynamicUpdate
+@DynamicInsert
+@Table(name = "customer_sketch")
+
+public class CustomerSketch implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "bucketday")
+    private LocalDate day;
+
+    @Column(name = "hllprecision", nullable = false)
+    private Integer precision;
+
+    @Lob
+    @Column(name = "registers", nullable = false, columnDefinition = "mediumblob")
+    private byte[] registers;
+
+}
@@ -0,0 +1,43 @@
+package com.inn.cafe.POJO;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.io.Serializable;
+
+// Idempotency keys shared by every node when cafe.idempotency.store.type=jdbc.
+// A row without a status is a request that is still running. The table is only written through JdbcIdempotencyStore.
+@Data
+@Entity
+@DynamicUpdate
+@DynamicInsert
+@Table(name = "idempotency_key", indexes = @Index(name = "idx_idempotency_key_createdat", columnList = "createdat"))
+
+public class IdempotencyKey implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "idemkey", length = 255)
+    private String key;
+
+    @Column(name = "fingerprint", length = 64)
+    private String fingerprint;
+
+    @Column(name = "status")
+    private Integer status;
+
+    @Column(name = "body", columnDefinition = "text")
+    private String body;
+
+    // Epoch millis
+    @Column(name = "createdat")
+    private Long createdAt;
+
+    // Epoch millis of the claim of the request that is running, it holds the row for cafe.idempotency.lease-ms
+    @Column(name = "claimedat")
+    private Long claimedAt;
+
+}
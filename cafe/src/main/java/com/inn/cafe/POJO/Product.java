@@ -16,7 +16,7 @@ import java.io.Serializable;
 
 @NamedQuery(name="Product.getProductByCategory", query="select new com.inn.cafe.wrapper.ProductWrapper(p.id, p.name) from Product p where p.category.id=:id and p.status='true'")
 
-@NamedQuery(name="Product.getProductById", query="select new com.inn.cafe.wrapper.ProductWrapper(p.id, p.name, p.description, p.price) from Product p where p.category.id=:id")
+@NamedQuery(name="Product.getProductById", query="select new com.inn.cafe.wrapper.ProductWrapper(p.id, p.name, p.description, p.price) from Product p where p.id=:id")
 
 @Data
 @Entity
@@ -0,0 +1,53 @@
+package com.inn.cafe.POJO;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.DynamicInsert;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// Quantity and revenue sold per time bucket (hour, day or month, in server time), category, product and
+// payment method. Maintained incrementally by SalesRollups and read by /dashboard/sales.
+// The unique key is what SalesRollupJdbcDao upserts on, so unknown ids are stored as 0 instead of null.
+@Data
+@Entity
+@DynamicUpdate
+@DynamicInsert
+@Table(name = "sales_rollup", uniqueConstraints = @UniqueConstraint(name = "uk_sales_rollup",
+        columnNames = {"granularity", "bucketstart", "category_fk", "product_fk", "paymentmethod"}))
+public class SalesRollup implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // Bill.paymentMethod is not limited, SalesRollups cuts longer values to this before they become a key
+    public static final int PAYMENT_METHOD_LENGTH = 50;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "granularity", length = 8, nullable = false)
+    private String granularity;
+
+    @Column(name = "bucketstart", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "category_fk", nullable = false)
+    private Integer categoryId;
+
+    @Column(name = "product_fk", nullable = false)
+    private Integer productId;
+
+    @Column(name = "paymentmethod", length = PAYMENT_METHOD_LENGTH, nullable = false)
+    private String paymentMethod;
+
+    @Column(name = "quantity", nullable = false)
+    private Long quantity;
+
+    @Column(name = "revenue", nullable = false)
+    private Double revenue;
+
+}
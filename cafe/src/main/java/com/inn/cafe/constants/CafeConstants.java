@@ -6,4 +6,13 @@ public class CafeConstants {
     public static final String INVALID_DATA = "Invalid Data.";
     public static final String UNAUTHORIZED_ACCESS = "Unauthorized access.";
     public static final String STORE_LOCATION = "/Users/mahlonkirwa/Desktop";
+    // Number of bills sent to the database in one JDBC batch by /bill/batch
+    public static final int BILL_BATCH_SIZE = 100;
+    // Page size of /bill/getBills when the client sends a cursor but no limit, and the largest page it may ask for
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    // Request header that makes /bill/generateReport safe to retry, and the response header set on a repeat
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
 }
@@ -1,14 +1,56 @@
 package com.inn.cafe.dao;
 
 import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.wrapper.BillWrapper;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface BillDao extends JpaRepository<Bill, Integer>{
 
     List<Bill> getAllBills();
 
     List<Bill> getBillsByUserName(@Param("username") String username);
+
+    List<BillWrapper> getBillsPage(@Param("cursor") Integer cursor, Pageable pageable);
+
+    List<BillWrapper> getBillsPageByUserName(@Param("username") String username, @Param("cursor") Integer cursor, Pageable pageable);
+
+    List<BillWrapper> getBillsPageWithDetails(@Param("cursor") Integer cursor, Pageable pageable);
+
+    List<BillWrapper> getBillsPageByUserNameWithDetails(@Param("username") String username, @Param("cursor") Integer cursor, Pageable pageable);
+
+    // Integer.MIN_VALUE as fetch size makes the MySQL driver stream rows one by one instead of
+    // reading the whole result into memory. Read only, so Hibernate keeps no snapshots of the entities.
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    Stream<Bill> streamBills(@Param("fromId") Integer fromId, @Param("toId") Integer toId);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    Stream<Bill> streamBillsByUserName(@Param("username") String username, @Param("fromId") Integer fromId, @Param("toId") Integer toId);
+
+    Optional<Bill> findByUuid(String uuid);
+
+    List<String> getExistingUuids(@Param("uuids") Collection<String> uuids);
+
+    List<BillWrapper> getBillsAfter(@Param("cursor") Integer cursor, Pageable pageable);
+
+    List<Bill> findByUuidIn(Collection<String> uuids);
+
+    List<Bill> getBillsWithoutItems(@Param("cursor") Integer cursor, Pageable pageable);
 }
@@ -0,0 +1,19 @@
+package com.inn.cafe.dao;
+
+import com.inn.cafe.POJO.BillItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface BillItemDao extends JpaRepository<BillItem, Integer> {
+
+    List<BillItem> findByBillId(Integer billId);
+
+    // One statement instead of loading and deleting the items one by one
+    @Modifying
+    @Query("delete from BillItem i where i.billId = :billId")
+    int deleteByBillId(@Param("billId") Integer billId);
+}
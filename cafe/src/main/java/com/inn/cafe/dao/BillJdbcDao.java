@@ -0,0 +1,119 @@
+package com.inn.cafe.dao;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Plain JDBC access to the bill table for the paths where JPA is too slow.
+// Bill uses IDENTITY ids, so Hibernate sends one insert per bill. Here we send a whole chunk in one
+// JDBC batch instead (rewriteBatchedStatements on the MySQL url turns it into a multi-row insert)
+// and still get the generated ids back. The line items of those bills go to bill_item the same way.
+@Repository
+public class BillJdbcDao {
+
+    private static final String INSERT_BILL_ITEM = "insert into bill_item (bill_fk, product_fk, category_fk, quantity, unitprice, subtotal) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_BILL = "insert into bill (uuid, name, email, contactnumber, paymentmethod, total, productdetails, createdby, createdat) " +
+            "values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // Inserts the bills in one batch and sets the generated id on each of them
+    @Transactional
+    public void insertBills(List<Bill> bills) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_BILL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Bill bill = bills.get(i);
+                        ps.setString(1, bill.getUuid());
+                        ps.setString(2, bill.getName());
+                        ps.setString(3, bill.getEmail());
+                        ps.setString(4, bill.getContactNumber());
+                        ps.setString(5, bill.getPaymentMethod());
+                        ps.setObject(6, bill.getTotal());
+                        ps.setString(7, bill.getProductDetails());
+                        ps.setString(8, bill.getCreatedBy());
+                        ps.setTimestamp(9, bill.getCreatedAt() == null ? null : Timestamp.from(bill.getCreatedAt()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return bills.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < bills.size() && i < keys.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            bills.get(i).setId(((Number) key).intValue());
+        }
+    }
+
+    // Writes the line items of the given bills in one batch. items.get(i) belongs to bills.get(i),
+    // which must already have its id. The category of every product is looked up in a single query
+    // and set on the items.
+    @Transactional
+    public void insertBillItems(List<Bill> bills, List<List<BillItemWrapper>> items) {
+        Set<Integer> productIds = new HashSet<>();
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < bills.size(); i++) {
+            for (BillItemWrapper item : items.get(i)) {
+                if (item.getId() != null) {
+                    productIds.add(item.getId());
+                }
+            }
+        }
+        Map<Integer, Integer> categoryIds = getCategoryIds(productIds);
+        for (int i = 0; i < bills.size(); i++) {
+            Integer billId = bills.get(i).getId();
+            for (BillItemWrapper item : items.get(i)) {
+                item.setCategoryId(categoryIds.get(item.getId()));
+                rows.add(new Object[]{billId, item.getId(), item.getCategoryId(), item.getQuantity(),
+                        item.getPrice(), item.getTotal()});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_BILL_ITEM, rows);
+        }
+    }
+
+    private Map<Integer, Integer> getCategoryIds(Set<Integer> productIds) {
+        Map<Integer, Integer> categoryIds = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return categoryIds;
+        }
+        namedParameterJdbcTemplate.query("select id, category_fk from product where id in (:ids)",
+                Map.of("ids", productIds),
+                rs -> {
+                    categoryIds.put(rs.getInt(1), rs.getInt(2));
+                });
+        return categoryIds;
+    }
+}
@@ -0,0 +1,44 @@
+package com.inn.cafe.dao;
+
+import com.inn.cafe.utils.HyperLogLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Plain JDBC access to customer_sketch. A sketch is only ever merged into, never replaced, so several
+// nodes (or a retried flush) can write the same day without losing customers.
+@Repository
+public class CustomerSketchJdbcDao {
+
+    private static final String SELECT_FOR_UPDATE = "select hllprecision, registers from customer_sketch where bucketday = ? for update";
+    private static final String UPSERT = "insert into customer_sketch (bucketday, hllprecision, registers) values (?, ?, ?) " +
+            "on duplicate key update hllprecision = values(hllprecision), registers = values(registers)";
+    private static final String SELECT_RANGE = "select bucketday, hllprecision, registers from customer_sketch where bucketday between ? and ?";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Transactional
+    public void merge(LocalDate day, HyperLogLog sketch) {
+        List<HyperLogLog> stored = jdbcTemplate.query(SELECT_FOR_UPDATE,
+                (rs, rowNumber) -> new HyperLogLog(rs.getInt(1), rs.getBytes(2)), Date.valueOf(day));
+        HyperLogLog merged = stored.isEmpty() ? sketch : HyperLogLog.union(stored.get(0), sketch);
+        jdbcTemplate.update(UPSERT, Date.valueOf(day), merged.getPrecision(), merged.toBytes());
+    }
+
+    // Stored sketches of the days in [from, to], by day
+    public Map<LocalDate, HyperLogLog> findRange(LocalDate from, LocalDate to) {
+        Map<LocalDate, HyperLogLog> sketches = new TreeMap<>();
+        jdbcTemplate.query(SELECT_RANGE, rs -> {
+            sketches.put(rs.getDate(1).toLocalDate(), new HyperLogLog(rs.getInt(2), rs.getBytes(3)));
+        }, Date.valueOf(from), Date.valueOf(to));
+        return sketches;
+    }
+}
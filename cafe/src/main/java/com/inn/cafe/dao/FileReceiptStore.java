@@ -0,0 +1,184 @@
+package com.inn.cafe.dao;
+
+import com.google.common.hash.Hashing;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+// One file per receipt. With fanout levels > 0 the files are spread over hashed prefix directories
+// (e.g. 3f/a2/BILL-123.pdf) so no single directory grows to hundreds of thousands of entries.
+// Files are written to a temp file in the target directory and renamed into place, so readers never
+// see a half written pdf.
+@Slf4j
+public class FileReceiptStore implements ReceiptStore {
+
+    private static final String EXTENSION = ".pdf";
+    private static final String TEMP_PREFIX = ".tmp-";
+    // Every receipt uuid starts with this. Other files in the directory are never listed.
+    private static final String RECEIPT_PREFIX = "BILL-";
+
+    private final Path baseDirectory;
+    private final int fanoutLevels;
+
+    public FileReceiptStore(String location, int fanoutLevels) {
+        this.baseDirectory = Paths.get(location);
+        this.fanoutLevels = fanoutLevels;
+    }
+
+    public Path getBaseDirectory() {
+        return baseDirectory;
+    }
+
+    public int getFanoutLevels() {
+        return fanoutLevels;
+    }
+
+    // Directory the receipt belongs in. Each level is one byte of the uuid hash written as two hex digits.
+    Path directoryFor(String uuid) {
+        ReceiptStore.checkUuid(uuid);
+        Path directory = baseDirectory;
+        if (fanoutLevels > 0) {
+            String hash = Hashing.murmur3_32().hashString(uuid, StandardCharsets.UTF_8).toString();
+            for (int level = 0; level < fanoutLevels; level++) {
+                directory = directory.resolve(hash.substring(level * 2, level * 2 + 2));
+            }
+        }
+        return directory;
+    }
+
+    // Receipts written before fanout was switched on still live in the base directory
+    private Path resolveExisting(String uuid) {
+        Path path = directoryFor(uuid).resolve(uuid + EXTENSION);
+        if (fanoutLevels > 0 && !Files.exists(path)) {
+            Path legacyPath = baseDirectory.resolve(uuid + EXTENSION);
+            if (Files.exists(legacyPath)) {
+                return legacyPath;
+            }
+        }
+        return path;
+    }
+
+    @Override
+    public boolean exists(String uuid) {
+        return Files.exists(resolveExisting(uuid));
+    }
+
+    @Override
+    public long size(String uuid) throws IOException {
+        Path path = resolveExisting(uuid);
+        return Files.exists(path) ? Files.size(path) : -1;
+    }
+
+    @Override
+    public InputStream openStream(String uuid) throws IOException {
+        try {
+            return Files.newInputStream(resolveExisting(uuid));
+        } catch (NoSuchFileException ex) {
+            return null;
+        }
+    }
+
+    @Override
+    public Path getPath(String uuid) {
+        Path path = resolveExisting(uuid);
+        return Files.exists(path) ? path : null;
+    }
+
+    @Override
+    public PendingReceipt create(String uuid) throws IOException {
+        Path directory = directoryFor(uuid);
+        Files.createDirectories(directory);
+        Path target = directory.resolve(uuid + EXTENSION);
+        Path temp = Files.createTempFile(directory, TEMP_PREFIX, EXTENSION);
+        OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(temp));
+        return new PendingReceipt() {
+            private boolean committed;
+
+            @Override
+            public OutputStream getOutputStream() {
+                return outputStream;
+            }
+
+            @Override
+            public void commit() throws IOException {
+                outputStream.close();
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                committed = true;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (!committed) {
+                    outputStream.close();
+                    Files.deleteIfExists(temp);
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean delete(String uuid) throws IOException {
+        return Files.deleteIfExists(resolveExisting(uuid));
+    }
+
+    // Depth first walk of the prefix directories in name order. The cursor is the relative path of the
+    // last receipt returned, so a page only lists the directories on and after that path.
+    @Override
+    public ReceiptPage list(String cursor, int limit) throws IOException {
+        List<String> uuids = new ArrayList<>(limit);
+        String[] last = new String[1];
+        collect(baseDirectory, "", cursor == null ? List.of() : List.of(cursor.split("/")), limit, uuids, last);
+        return new ReceiptPage(uuids, uuids.size() < limit ? null : last[0]);
+    }
+
+    private void collect(Path directory, String relative, List<String> cursorPath, int limit,
+                         List<String> uuids, String[] last) throws IOException {
+        int depth = relative.isEmpty() ? 0 : relative.split("/").length;
+        List<Path> children;
+        try (Stream<Path> stream = Files.list(directory)) {
+            children = stream.sorted(Comparator.comparing(path -> path.getFileName().toString())).toList();
+        } catch (NoSuchFileException ex) {
+            return;
+        }
+        String cursorName = depth < cursorPath.size() ? cursorPath.get(depth) : null;
+        for (Path child : children) {
+            if (uuids.size() >= limit) {
+                return;
+            }
+            String name = child.getFileName().toString();
+            int compared = cursorName == null ? 1 : name.compareTo(cursorName);
+            if (compared < 0) {
+                continue;
+            }
+            String childRelative = relative.isEmpty() ? name : relative + "/" + name;
+            if (Files.isDirectory(child)) {
+                if (depth < fanoutLevels && isPrefixDirectory(name)) {
+                    // Only the directory on the cursor path resumes part way, later ones are listed in full
+                    collect(child, childRelative, compared == 0 ? cursorPath : List.of(), limit, uuids, last);
+                }
+            } else if (compared > 0 && (depth == fanoutLevels || depth == 0)
+                    && name.startsWith(RECEIPT_PREFIX) && name.endsWith(EXTENSION)) {
+                // depth 0 with fanout on holds the receipts written before fanout
+                uuids.add(name.substring(0, name.length() - EXTENSION.length()));
+                last[0] = childRelative;
+            }
+        }
+    }
+
+    private boolean isPrefixDirectory(String name) {
+        return name.length() == 2 && Character.digit(name.charAt(0), 16) >= 0 && Character.digit(name.charAt(1), 16) >= 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.inn.cafe.dao;
+
+import java.util.function.Supplier;
+
+// Remembers the response of requests sent with an Idempotency-Key, so a retried request gets the
+// original response back instead of being executed again. Keys expire after a while.
+public interface IdempotencyStore {
+
+    // fingerprint identifies the request body, so a key reused for a different request can be told apart.
+    // replayed is false for the response of the request that actually ran.
+    record StoredResponse(int status, String body, String fingerprint, boolean replayed) {
+
+        StoredResponse asReplay() {
+            return new StoredResponse(status, body, fingerprint, true);
+        }
+    }
+
+    // Runs the request if this is the first time the key is seen, otherwise returns the stored response.
+    // A repeat that arrives while the first request is still running waits for it, and gets null if it
+    // does not finish in time. Responses with a 5xx status are not kept, so the request can be retried.
+    StoredResponse execute(String key, String fingerprint, Supplier<StoredResponse> request);
+}
@@ -0,0 +1,46 @@
+package com.inn.cafe.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Picks where idempotency keys are kept from cafe.idempotency.store.type:
+//   memory - bounded map on this node, enough for a single instance
+//   jdbc   - the idempotency_key table, shared by every node
+@Slf4j
+@Configuration
+public class IdempotencyStoreConfig {
+
+    @Value("${cafe.idempotency.store.type:memory}")
+    private String type;
+
+    @Value("${cafe.idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    @Value("${cafe.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    // How long a repeat waits for the first request with the same key before giving up with 409
+    @Value("${cafe.idempotency.wait-ms:10000}")
+    private long waitMillis;
+
+    // How long a jdbc key without a response stays with the node that claimed it before a retry may take it over.
+    // Well above wait-ms and the time a bill takes, or a slow request could run twice.
+    @Value("${cafe.idempotency.lease-ms:60000}")
+    private long leaseMillis;
+
+    @Bean
+    public IdempotencyStore idempotencyStore(JdbcTemplate jdbcTemplate) {
+        log.info("Using {} idempotency store", type);
+        switch (type) {
+            case "memory":
+                return new MemoryIdempotencyStore(maxEntries, ttlMillis, waitMillis);
+            case "jdbc":
+                return new JdbcIdempotencyStore(jdbcTemplate, ttlMillis, waitMillis, leaseMillis);
+            default:
+                throw new IllegalArgumentException("Unknown cafe.idempotency.store.type " + type);
+        }
+    }
+}
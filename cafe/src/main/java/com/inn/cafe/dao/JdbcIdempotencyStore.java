@@ -0,0 +1,138 @@
+package com.inn.cafe.dao;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+// Idempotency keys in the idempotency_key table, for deployments with more than one node.
+// The primary key decides which request runs: whoever inserts the row first. Repeats poll the row
+// until the first request has stored its response.
+// A row without a status is held by the node that claimed it for leaseMillis only. When that node dies
+// mid-request the row would otherwise block every retry until the TTL, so once the lease is over a
+// retry takes the row over with a conditional update, and the stale owner can no longer complete it.
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String INSERT = "insert into idempotency_key (idemkey, fingerprint, createdat, claimedat) values (?, ?, ?, ?)";
+    private static final String TAKE_OVER = "update idempotency_key set fingerprint = ?, createdat = ?, claimedat = ? "
+            + "where idemkey = ? and status is null and (claimedat is null or claimedat < ?)";
+    private static final String SELECT = "select status, body, fingerprint, createdat, claimedat from idempotency_key where idemkey = ?";
+    private static final String COMPLETE = "update idempotency_key set status = ?, body = ? where idemkey = ? and claimedat = ?";
+    private static final String RELEASE = "delete from idempotency_key where idemkey = ? and claimedat = ?";
+    private static final String DELETE = "delete from idempotency_key where idemkey = ?";
+    private static final String DELETE_EXPIRED = "delete from idempotency_key where createdat < ?";
+
+    private static final long POLL_MILLIS = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long ttlMillis;
+    private final long waitMillis;
+    private final long leaseMillis;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, long ttlMillis, long waitMillis, long leaseMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttlMillis = ttlMillis;
+        this.waitMillis = waitMillis;
+        this.leaseMillis = leaseMillis;
+    }
+
+    @Override
+    public StoredResponse execute(String key, String fingerprint, Supplier<StoredResponse> request) {
+        long claimedAt = claim(key, fingerprint);
+        if (claimedAt == 0) {
+            StoredResponse stored = await(key);
+            // The row expired, its lease ran out or the first request failed in the meantime, so this one may run after all
+            if (stored != null || (claimedAt = claim(key, fingerprint)) == 0) {
+                return stored;
+            }
+        }
+
+        try {
+            StoredResponse response = request.get();
+            if (response.status() >= 500) {
+                jdbcTemplate.update(RELEASE, key, claimedAt);
+            } else if (jdbcTemplate.update(COMPLETE, response.status(), response.body(), key, claimedAt) == 0) {
+                log.warn("Idempotency key {} was taken over while its request was running", key);
+            }
+            return response;
+        } catch (RuntimeException ex) {
+            jdbcTemplate.update(RELEASE, key, claimedAt);
+            throw ex;
+        }
+    }
+
+    // Returns the claimedat of the row this request now holds, or 0 when another request holds the key
+    private long claim(String key, String fingerprint) {
+        long now = System.currentTimeMillis();
+        try {
+            jdbcTemplate.update(INSERT, key, fingerprint, now, now);
+            return now;
+        } catch (DuplicateKeyException ex) {
+            if (jdbcTemplate.update(TAKE_OVER, fingerprint, now, now, key, now - leaseMillis) == 1) {
+                log.warn("Took over idempotency key {} after its lease expired", key);
+                return now;
+            }
+            return 0;
+        }
+    }
+
+    // Returns null when the first request is still running after waitMillis, or its row is gone or its lease is over
+    private StoredResponse await(String key) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            List<StoredResponse> rows = jdbcTemplate.query(SELECT, (resultSet, rowNumber) -> {
+                if (resultSet.getLong("createdat") < System.currentTimeMillis() - ttlMillis) {
+                    return null;
+                }
+                int status = resultSet.getInt("status");
+                if (resultSet.wasNull()) {
+                    long claimedAt = resultSet.getLong("claimedat");
+                    return claimedAt < System.currentTimeMillis() - leaseMillis ? new StoredResponse(-1, null, null, true)
+                            : new StoredResponse(0, null, null, true);
+                }
+                return new StoredResponse(status, resultSet.getString("body"), resultSet.getString("fingerprint"), true);
+            }, key);
+            if (rows.isEmpty()) {
+                return null;
+            }
+            StoredResponse stored = rows.get(0);
+            if (stored == null) {
+                // Expired but not purged yet
+                jdbcTemplate.update(DELETE, key);
+                return null;
+            }
+            if (stored.status() < 0) {
+                // Claimed longer than the lease ago, claim() takes it over
+                return null;
+            }
+            if (stored.status() != 0) {
+                return stored;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return null;
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cafe.idempotency.purge-delay-ms:600000}")
+    public void purgeExpired() {
+        try {
+            int purged = jdbcTemplate.update(DELETE_EXPIRED, System.currentTimeMillis() - ttlMillis);
+            if (purged > 0) {
+                log.info("Purged {} expired idempotency keys", purged);
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.inn.cafe.dao;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Idempotency keys of this node only, held in memory.
+// Entries are kept in insertion order, which is also expiry order, so expired entries and the oldest
+// ones once the store is full are always at the head of the map. Entries whose request is still running are
+// never evicted, a repeat would otherwise run it again; when the store is full of those, new keys get a 503.
+@Slf4j
+public class MemoryIdempotencyStore implements IdempotencyStore {
+
+    private static final String FULL_BODY = "{\"message\":\"Too many requests with an Idempotency-Key are in progress, try again later.\"}";
+
+    private static class Entry {
+        final CompletableFuture<StoredResponse> response = new CompletableFuture<>();
+        final long expiresAt;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final long waitMillis;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public MemoryIdempotencyStore(int maxEntries, long ttlMillis, long waitMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    public StoredResponse execute(String key, String fingerprint, Supplier<StoredResponse> request) {
+        Entry entry;
+        boolean first = false;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry eldest = iterator.next();
+                if (eldest.expiresAt > now && entries.size() < maxEntries) {
+                    break;
+                }
+                if (eldest.response.isDone()) {
+                    iterator.remove();
+                }
+            }
+            entry = entries.get(key);
+            if (entry == null) {
+                if (entries.size() >= maxEntries) {
+                    log.warn("Idempotency store is full of {} requests in progress", entries.size());
+                    return new StoredResponse(503, FULL_BODY, fingerprint, false);
+                }
+                entry = new Entry(now + ttlMillis);
+                entries.put(key, entry);
+                first = true;
+            }
+        }
+        if (!first) {
+            return await(entry);
+        }
+
+        try {
+            StoredResponse response = request.get();
+            if (response.status() >= 500) {
+                remove(key, entry);
+            }
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            remove(key, entry);
+            entry.response.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    private StoredResponse await(Entry entry) {
+        try {
+            return entry.response.get(waitMillis, TimeUnit.MILLISECONDS).asReplay();
+        } catch (TimeoutException ex) {
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("The original request failed", ex.getCause());
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        synchronized (entries) {
+            entries.remove(key, entry);
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.inn.cafe.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Where rendered receipt pdfs are kept, keyed by bill uuid.
+// A receipt only becomes visible to readers once it has been written completely.
+// Every method taking a uuid throws IllegalArgumentException for one that is not a valid receipt uuid.
+public interface ReceiptStore {
+
+    // Uuids come from clients and end up in file names, so only the characters bill ids are made of are
+    // accepted. Nothing like ../ can reach a file outside the store.
+    Pattern UUID_PATTERN = Pattern.compile("[A-Za-z0-9-]{1,64}");
+
+    static boolean isValidUuid(String uuid) {
+        return uuid != null && UUID_PATTERN.matcher(uuid).matches();
+    }
+
+    static String checkUuid(String uuid) {
+        if (!isValidUuid(uuid)) {
+            throw new IllegalArgumentException("Invalid receipt uuid");
+        }
+        return uuid;
+    }
+
+    // A receipt being written. It is published by commit(), closing it without committing throws it away.
+    interface PendingReceipt extends Closeable {
+        OutputStream getOutputStream();
+
+        void commit() throws IOException;
+    }
+
+    interface ReceiptWriter {
+        void writeTo(OutputStream outputStream) throws Exception;
+    }
+
+    // One page of a listing. nextCursor is null once the listing is complete.
+    record ReceiptPage(List<String> uuids, String nextCursor) {
+    }
+
+    boolean exists(String uuid);
+
+    // Size in bytes, or -1 when the receipt does not exist
+    long size(String uuid) throws IOException;
+
+    // Returns null when the receipt does not exist
+    InputStream openStream(String uuid) throws IOException;
+
+    // The file holding exactly this receipt, or null when the store does not keep one file per receipt
+    Path getPath(String uuid);
+
+    PendingReceipt create(String uuid) throws IOException;
+
+    boolean delete(String uuid) throws IOException;
+
+    // Lists the stored receipts in a stable, store specific order, at most limit at a time.
+    // Pass null to start and the nextCursor of the previous page to continue.
+    ReceiptPage list(String cursor, int limit) throws IOException;
+
+    default void write(String uuid, ReceiptWriter writer) throws Exception {
+        try (PendingReceipt pending = create(uuid)) {
+            writer.writeTo(pending.getOutputStream());
+            pending.commit();
+        }
+    }
+
+    // Returns null when the receipt does not exist
+    default byte[] read(String uuid) throws IOException {
+        try (InputStream inputStream = openStream(uuid)) {
+            return inputStream == null ? null : inputStream.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.inn.cafe.dao;
+
+import com.inn.cafe.constants.CafeConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+// Picks the receipt store for this deployment from cafe.receipt.store.type:
+//   flat    - one directory with every pdf in it (the original layout)
+//   sharded - one file per pdf under hashed prefix directories
+//   segment - one append-only file with an offset index, for lots of tiny pdfs
+@Slf4j
+@Configuration
+public class ReceiptStoreConfig {
+
+    @Value("${cafe.receipt.store.type:sharded}")
+    private String type;
+
+    @Value("${cafe.receipt.store.location:" + CafeConstants.STORE_LOCATION + "}")
+    private String location;
+
+    @Value("${cafe.receipt.store.fanout-levels:2}")
+    private int fanoutLevels;
+
+    @Bean
+    public ReceiptStore receiptStore() throws IOException {
+        log.info("Using {} receipt store at {}", type, location);
+        switch (type) {
+            case "flat":
+                return new FileReceiptStore(location, 0);
+            case "sharded":
+                return new FileReceiptStore(location, fanoutLevels);
+            case "segment":
+                return new SegmentReceiptStore(location);
+            default:
+                throw new IllegalArgumentException("Unknown cafe.receipt.store.type " + type);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.inn.cafe.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// Plain JDBC access to sales_rollup. Rows are only ever added to, so flushing is a batch of upserts.
+@Repository
+public class SalesRollupJdbcDao {
+
+    private static final String UPSERT = "insert into sales_rollup (granularity, bucketstart, category_fk, product_fk, paymentmethod, quantity, revenue) " +
+            "values (?, ?, ?, ?, ?, ?, ?) on duplicate key update quantity = quantity + values(quantity), revenue = revenue + values(revenue)";
+
+    // Columns /dashboard/sales may group by, by the name used in the api
+    private static final Map<String, String> GROUP_COLUMNS = Map.of(
+            "category", "category_fk",
+            "product", "product_fk",
+            "paymentMethod", "paymentmethod");
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    // Each row is granularity, bucket start, category id, product id, payment method, quantity, revenue
+    @Transactional
+    public void upsert(List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPSERT, rows);
+        }
+    }
+
+    public static boolean isGroupable(String groupBy) {
+        return groupBy == null || GROUP_COLUMNS.containsKey(groupBy);
+    }
+
+    // Rows of bucket start, group value (null when not grouped), quantity, revenue for buckets in [from, to)
+    public List<Object[]> query(String granularity, LocalDateTime from, LocalDateTime to, String groupBy) {
+        String group = groupBy == null ? null : GROUP_COLUMNS.get(groupBy);
+        String sql = "select bucketstart, " + (group == null ? "null" : group) + ", sum(quantity), sum(revenue) from sales_rollup " +
+                "where granularity = ? and bucketstart >= ? and bucketstart < ? group by bucketstart" + (group == null ? "" : ", " + group);
+        return jdbcTemplate.query(sql, (rs, rowNumber) -> new Object[]{
+                rs.getTimestamp(1).toLocalDateTime(), rs.getObject(2), rs.getLong(3), rs.getDouble(4)
+        }, granularity, Timestamp.valueOf(from), Timestamp.valueOf(to));
+    }
+}
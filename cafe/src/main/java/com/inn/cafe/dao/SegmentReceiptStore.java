@@ -0,0 +1,277 @@
+package com.inn.cafe.dao;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+// All receipts appended to a single segment file, with an in-memory index of uuid -> offset and length.
+// Meant for deployments with lots of tiny pdfs where one file per receipt costs more in file system
+// metadata than the pdf itself. The index is rebuilt by scanning the segment at startup.
+//
+// Record layout: uuid length (short), uuid (utf-8), data length (int, -1 for a delete), crc32 of the data (int), data.
+// A record is added to the index only after it has been fully appended, so readers never see part of one.
+// The crc is checked when the segment is loaded and on every read.
+@Slf4j
+public class SegmentReceiptStore implements ReceiptStore, Closeable {
+
+    private static final String SEGMENT_FILE = "receipts.seg";
+    private static final int TOMBSTONE = -1;
+
+    private static final String COMPACT_FILE = "receipts.seg.compact";
+    // Compacting is only worth a rewrite once this much of the segment is deleted or overwritten receipts
+    private static final long COMPACT_MIN_DEAD_BYTES = 16L * 1024 * 1024;
+
+    private final Path segmentPath;
+    private FileChannel channel;
+    private final Map<String, long[]> index = new ConcurrentHashMap<>();
+    private final Object appendLock = new Object();
+    private long end;
+
+    public SegmentReceiptStore(String location) throws IOException {
+        Path directory = Paths.get(location);
+        Files.createDirectories(directory);
+        segmentPath = directory.resolve(SEGMENT_FILE);
+        channel = FileChannel.open(segmentPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadIndex();
+        long deadBytes = end - liveBytes();
+        if (deadBytes >= COMPACT_MIN_DEAD_BYTES && deadBytes > end / 2) {
+            compact(directory.resolve(COMPACT_FILE));
+        }
+    }
+
+    private long liveBytes() {
+        long live = 0;
+        for (Map.Entry<String, long[]> entry : index.entrySet()) {
+            live += recordLength(entry.getKey().getBytes(StandardCharsets.UTF_8).length, entry.getValue()[1]);
+        }
+        return live;
+    }
+
+    private static long recordLength(int uuidLength, long dataLength) {
+        return Short.BYTES + uuidLength + Integer.BYTES * 2 + dataLength;
+    }
+
+    // Deleted and overwritten receipts stay in the segment until it is compacted, which only happens here, when
+    // the store is opened and nothing else is using it: the live receipts are copied to a new segment that then
+    // replaces the old one. A crash part way leaves the old segment untouched.
+    void compact(Path compactPath) throws IOException {
+        long before = end;
+        Map<String, long[]> live = new TreeMap<>(index);
+        try (FileChannel compacted = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (Map.Entry<String, long[]> entry : live.entrySet()) {
+                byte[] data = read(entry.getKey());
+                byte[] uuidBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                ByteBuffer record = ByteBuffer.allocate((int) recordLength(uuidBytes.length, data.length));
+                record.putShort((short) uuidBytes.length).put(uuidBytes).putInt(data.length).putInt(crcOf(data)).put(data);
+                record.flip();
+                while (record.hasRemaining()) {
+                    compacted.write(record);
+                }
+            }
+            compacted.force(true);
+        }
+        channel.close();
+        Files.move(compactPath, segmentPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(segmentPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index.clear();
+        loadIndex();
+        log.info("Compacted {} from {} to {} bytes", segmentPath, before, end);
+    }
+
+    // Scans the segment, checking every record's crc. The first record that is cut short or does not match
+    // its crc (crash while appending, or a damaged disk) ends the segment: it and everything after it is dropped.
+    private void loadIndex() throws IOException {
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(Short.BYTES);
+        while (position < size) {
+            header.clear().limit(Short.BYTES);
+            if (!readFully(header, position)) {
+                break;
+            }
+            int uuidLength = header.flip().getShort();
+            if (uuidLength <= 0) {
+                break;
+            }
+            ByteBuffer recordHeader = ByteBuffer.allocate(uuidLength + Integer.BYTES * 2);
+            if (!readFully(recordHeader, position + Short.BYTES)) {
+                break;
+            }
+            recordHeader.flip();
+            byte[] uuidBytes = new byte[uuidLength];
+            recordHeader.get(uuidBytes);
+            int dataLength = recordHeader.getInt();
+            int crc = recordHeader.getInt();
+            long dataOffset = position + Short.BYTES + uuidLength + Integer.BYTES * 2;
+            String uuid = new String(uuidBytes, StandardCharsets.UTF_8);
+            if (dataLength == TOMBSTONE) {
+                if (crc != 0) {
+                    break;
+                }
+                index.remove(uuid);
+                position = dataOffset;
+                continue;
+            }
+            if (dataLength < 0 || dataOffset + dataLength > size) {
+                break;
+            }
+            ByteBuffer data = ByteBuffer.allocate(dataLength);
+            if (!readFully(data, dataOffset) || crcOf(data.array()) != crc) {
+                break;
+            }
+            index.put(uuid, new long[]{dataOffset, dataLength, crc});
+            position = dataOffset + dataLength;
+        }
+        if (position < size) {
+            log.warn("Truncating {} bytes from the first damaged or partial record at {} of {}", size - position, position, segmentPath);
+            channel.truncate(position);
+        }
+        end = position;
+        log.info("Loaded {} receipts from {}", index.size(), segmentPath);
+    }
+
+    private static int crcOf(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    private void append(String uuid, byte[] data, int dataLength) throws IOException {
+        byte[] uuidBytes = uuid.getBytes(StandardCharsets.UTF_8);
+        int crc = data == null ? 0 : crcOf(data);
+        ByteBuffer record = ByteBuffer.allocate(Short.BYTES + uuidBytes.length + Integer.BYTES * 2 + (data == null ? 0 : data.length));
+        record.putShort((short) uuidBytes.length).put(uuidBytes).putInt(dataLength).putInt(crc);
+        if (data != null) {
+            record.put(data);
+        }
+        record.flip();
+        synchronized (appendLock) {
+            long position = end;
+            long dataOffset = position + Short.BYTES + uuidBytes.length + Integer.BYTES * 2;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            end = position;
+            if (dataLength == TOMBSTONE) {
+                index.remove(uuid);
+            } else {
+                index.put(uuid, new long[]{dataOffset, dataLength, crc});
+            }
+        }
+    }
+
+    @Override
+    public boolean exists(String uuid) {
+        return index.containsKey(ReceiptStore.checkUuid(uuid));
+    }
+
+    @Override
+    public long size(String uuid) {
+        long[] entry = index.get(ReceiptStore.checkUuid(uuid));
+        return entry == null ? -1 : entry[1];
+    }
+
+    @Override
+    public InputStream openStream(String uuid) throws IOException {
+        byte[] data = read(uuid);
+        return data == null ? null : new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public byte[] read(String uuid) throws IOException {
+        long[] entry = index.get(ReceiptStore.checkUuid(uuid));
+        if (entry == null) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+        // Checked on every read, the disk may have gone bad since the segment was loaded
+        if (!readFully(buffer, entry[0]) || crcOf(buffer.array()) != (int) entry[2]) {
+            throw new IOException("Receipt " + uuid + " is damaged in " + segmentPath);
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public Path getPath(String uuid) {
+        return null;
+    }
+
+    @Override
+    public PendingReceipt create(String uuid) {
+        ReceiptStore.checkUuid(uuid);
+        // Receipts in this store are small, so they are collected in memory and appended in one write
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(16 * 1024);
+        return new PendingReceipt() {
+            @Override
+            public OutputStream getOutputStream() {
+                return outputStream;
+            }
+
+            @Override
+            public void commit() throws IOException {
+                byte[] data = outputStream.toByteArray();
+                append(uuid, data, data.length);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Override
+    public boolean delete(String uuid) throws IOException {
+        if (!index.containsKey(ReceiptStore.checkUuid(uuid))) {
+            return false;
+        }
+        append(uuid, null, TOMBSTONE);
+        return true;
+    }
+
+    @Override
+    public ReceiptPage list(String cursor, int limit) {
+        // The whole index is in memory already, the cursor is simply the last uuid returned
+        List<String> uuids = index.keySet().stream()
+                .filter(uuid -> cursor == null || uuid.compareTo(cursor) > 0)
+                .sorted()
+                .limit(limit)
+                .toList();
+        return new ReceiptPage(uuids, uuids.size() < limit ? null : uuids.get(uuids.size() - 1));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(true);
+        channel.close();
+    }
+}
@@ -1,8 +1,12 @@
 package com.inn.cafe.rest;
 
-import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.constants.CafeConstants;
+import com.inn.cafe.wrapper.BillWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Map;
@@ -10,15 +14,63 @@ import java.util.Map;
 @RequestMapping(path = "/bill")
 public interface BillRest {
 
+    // A retry sent with the same Idempotency-Key gets the original response instead of a second bill
     @PostMapping(path = "/generateReport")
-    ResponseEntity<String> generateReport(@RequestBody Map<String, Object> requestMap);
+    ResponseEntity<String> generateReport(@RequestBody Map<String, Object> requestMap,
+                                          @RequestHeader(value = CafeConstants.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey);
 
+    // Saves many bills at once, e.g. when a POS terminal comes back online.
+    // Returns one result per bill in the same order as the request.
+    @PostMapping(path = "/batch")
+    ResponseEntity<List<Map<String, Object>>> batchInsert(@RequestBody List<Map<String, Object>> requestList);
+
+    // Newest bills first, one page at a time. Pass the X-Next-Cursor header of a page as cursor to get the next one.
+    // productDetails is left out unless includeDetails=true.
+    // Without cursor and limit every bill is returned in one response, with productDetails unless includeDetails=false.
     @GetMapping(path ="/getBills")
-    ResponseEntity<List<Bill>> getBills();
+    ResponseEntity<List<BillWrapper>> getBills(@RequestParam(required = false) Integer cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) Boolean includeDetails);
+
+    // Streams every bill in the id range as ndjson (default) or csv, written row by row as it is read
+    @GetMapping(path = "/export")
+    ResponseEntity<StreamingResponseBody> exportBills(@RequestParam(required = false) String format,
+                                                      @RequestParam(required = false) Integer fromId,
+                                                      @RequestParam(required = false) Integer toId);
+
+    // Streams a zip of the receipts matching the filter: uuids (list), user, fromId and/or toId.
+    // Receipts that are not stored yet are rendered on the fly.
+    @PostMapping(path = "/archive")
+    ResponseEntity<StreamingResponseBody> archivePdfs(@RequestBody Map<String, Object> requestMap);
 
     @PostMapping(path = "/getPdf")
     ResponseEntity<byte[]> getPdf(@RequestBody Map<String, Object> requestMap);
 
+    // Streams the pdf to the client instead of building it in memory first.
+    // A receipt missing from the store is rebuilt from the saved bill.
+    @PostMapping(path = "/streamPdf")
+    ResponseEntity<StreamingResponseBody> streamPdf(@RequestBody Map<String, Object> requestMap);
+
+    // Cacheable download of a stored receipt. Supports Range, ETag / If-None-Match and is served with sendfile when possible.
+    @GetMapping(path = "/download/{uuid}")
+    void downloadPdf(@PathVariable String uuid, HttpServletRequest request, HttpServletResponse response);
+
+    // Render status of a receipt generated with isAsync=true: QUEUED, RENDERING, READY or FAILED
+    @GetMapping(path = "/status/{uuid}")
+    ResponseEntity<Map<String, Object>> getStatus(@PathVariable String uuid);
+
+    // Queue depth, latency and rejection numbers of the receipt render pool
+    @GetMapping(path = "/renderStats")
+    ResponseEntity<Map<String, Object>> getRenderStats();
+
+    // Hit, miss and eviction numbers of the in-memory pdf cache
+    @GetMapping(path = "/pdfCacheStats")
+    ResponseEntity<Map<String, Object>> getPdfCacheStats();
+
+    // What the last receipt reconciliation pass found and fixed
+    @GetMapping(path = "/reconcileReport")
+    ResponseEntity<Map<String, Object>> getReconcileReport();
+
     @PostMapping(path = "/delete/{id}")
     ResponseEntity<String> deleteBill(@PathVariable Integer id);
 }
@@ -1,10 +1,10 @@
 package com.inn.cafe.rest;
 
-import com.inn.cafe.POJO.Category;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RequestMapping(path ="/category")
@@ -15,8 +15,12 @@ public interface CategoryRest {
     ResponseEntity<String> addNewCategory(@RequestBody(required = true) Map<String, String> requestMap);
 
     // Returns all categories. Expected 1 value, filtervalue, if true we are getting all products irrespective of categories.
-    @GetMapping(path="/get")
-    ResponseEntity<List<Category>> getAllCategory(@RequestParam(required = false) String filterValue);
+    // Pre-serialised JSON, gzipped when the client accepts it. The ETag is the catalog version,
+    // a request whose If-None-Match is still current gets a 304.
+    @GetMapping(path="/get", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<byte[]> getAllCategory(@RequestParam(required = false) String filterValue,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     @PostMapping(path="/update")
     ResponseEntity<String> updateCategory(@RequestBody(required = true) Map<String, String> requestMap);
@@ -1,9 +1,13 @@
 package com.inn.cafe.rest;
 
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Map;
 
 @RequestMapping(path = "/dashboard")
@@ -11,4 +15,35 @@ public interface DashboardRest {
 
     @GetMapping(path = "/details")
     ResponseEntity<Map<String, Object>> getCount();
+
+    // Quantity and revenue per hour, day or month in [from, to), optionally split by category, product or paymentMethod.
+    // from and to are dates (2024-05-01) or date times (2024-05-01T08:00). The default is the last 30 days.
+    @GetMapping(path = "/sales")
+    ResponseEntity<List<Map<String, Object>>> getSales(@RequestParam(required = false) String granularity,
+                                                       @RequestParam(required = false) String from,
+                                                       @RequestParam(required = false) String to,
+                                                       @RequestParam(required = false) String groupBy);
+
+    // Approximate best sellers of the last hour or today (window=hour|today), by=product|category.
+    // Each quantity is within maxError of the real one.
+    @GetMapping(path = "/topProducts")
+    ResponseEntity<Map<String, Object>> getTopProducts(@RequestParam(required = false) String window,
+                                                       @RequestParam(required = false) String by,
+                                                       @RequestParam(required = false) Integer limit);
+
+    // Approximate distinct customers (by email, else contact number) over the days [from, to], default the last 7 days
+    @GetMapping(path = "/uniqueCustomers")
+    ResponseEntity<Map<String, Object>> getUniqueCustomers(@RequestParam(required = false) String from,
+                                                           @RequestParam(required = false) String to);
+
+    // Several widgets in one call (names=counts,salesToday,topProducts,topCategories,uniqueCustomers, default all).
+    // They run in parallel, each with its own timeout. Widgets that time out or fail are listed in errors
+    // and the response is marked partial.
+    @GetMapping(path = "/widgets")
+    ResponseEntity<Map<String, Object>> getWidgets(@RequestParam(required = false) String names);
+
+    // Server-Sent Events: a "dashboard" event with the counts and today's sales whenever they change,
+    // at most one per cafe.dashboard.stream.interval-ms. Each event is the full state.
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<SseEmitter> getStream();
 }
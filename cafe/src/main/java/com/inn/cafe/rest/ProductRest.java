@@ -1,10 +1,11 @@
 package com.inn.cafe.rest;
 
 import com.inn.cafe.wrapper.ProductWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Map;
 
 @RequestMapping(path = "/product")
@@ -13,8 +14,11 @@ public interface ProductRest {
     @PostMapping(path = "/add")
     ResponseEntity<String> addNewProduct(@RequestBody Map<String, String> requestMap);
 
-    @GetMapping(path = "/get")
-    ResponseEntity<List<ProductWrapper>> getAllProduct();
+    // The list endpoints answer with pre-serialised JSON, gzipped when the client accepts it.
+    // Their ETag is the catalog version, a request whose If-None-Match is still current gets a 304.
+    @GetMapping(path = "/get", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<byte[]> getAllProduct(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     @PostMapping(path = "/update")
     ResponseEntity<String> updateProduct(@RequestBody Map<String, String> requestMap);
@@ -25,8 +29,10 @@ public interface ProductRest {
     @PostMapping(path = "/updateStatus")
     ResponseEntity<String> updateStatus(@RequestBody Map<String, String> requestMap);
 
-    @GetMapping(path = "/getByCategory/{id}")
-    ResponseEntity<List<ProductWrapper>> getByCategory(@PathVariable Integer id);
+    @GetMapping(path = "/getByCategory/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    ResponseEntity<byte[]> getByCategory(@PathVariable Integer id,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
 
     @GetMapping(path = "/getById/{id}")
     ResponseEntity<ProductWrapper> getProductById(@PathVariable Integer id);
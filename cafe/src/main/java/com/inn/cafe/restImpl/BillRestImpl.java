@@ -1,17 +1,22 @@
 package com.inn.cafe.restImpl;
 
-import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.wrapper.BillWrapper;
 import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.rest.BillRest;
 import com.inn.cafe.service.BillService;
 import com.inn.cafe.utils.CafeUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,12 +29,13 @@ public class BillRestImpl implements BillRest {
     BillService billService;
     /**
      * @param requestMap
+     * @param idempotencyKey
      * @return
      */
     @Override
-    public ResponseEntity<String> generateReport(Map<String, Object> requestMap) {
+    public ResponseEntity<String> generateReport(Map<String, Object> requestMap, String idempotencyKey) {
         try{
-            return billService.generateReport(requestMap);
+            return billService.generateReport(requestMap, idempotencyKey);
         } catch (Exception ex){
             ex.printStackTrace();
         }
@@ -37,18 +43,65 @@ public class BillRestImpl implements BillRest {
     }
 
     /**
+     * @param requestList
      * @return
      */
     @Override
-    public ResponseEntity<List<Bill>> getBills() {
+    public ResponseEntity<List<Map<String, Object>>> batchInsert(List<Map<String, Object>> requestList) {
         try{
-            return billService.getBills();
+            return billService.batchInsert(requestList);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param cursor
+     * @param limit
+     * @param includeDetails
+     * @return
+     */
+    @Override
+    public ResponseEntity<List<BillWrapper>> getBills(Integer cursor, Integer limit, Boolean includeDetails) {
+        try{
+            return billService.getBills(cursor, limit, includeDetails);
         } catch (Exception ex){
             ex.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * @param format
+     * @param fromId
+     * @param toId
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportBills(String format, Integer fromId, Integer toId) {
+        try{
+            return billService.exportBills(format, fromId, toId);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param requestMap
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> archivePdfs(Map<String, Object> requestMap) {
+        try{
+            return billService.archivePdfs(requestMap);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
     /**
      * @param requestMap
      * @return
@@ -63,6 +116,90 @@ public class BillRestImpl implements BillRest {
         return null;
     }
 
+    /**
+     * @param requestMap
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> streamPdf(Map<String, Object> requestMap) {
+        try{
+            return billService.streamPdf(requestMap);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param uuid
+     * @param request
+     * @param response
+     */
+    @Override
+    public void downloadPdf(String uuid, HttpServletRequest request, HttpServletResponse response) {
+        try{
+            billService.downloadPdf(uuid, request, response);
+        } catch (Exception ex){
+            ex.printStackTrace();
+            if(!response.isCommitted()){
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        }
+    }
+
+    /**
+     * @param uuid
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getStatus(String uuid) {
+        try{
+            return billService.getStatus(uuid);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getRenderStats() {
+        try{
+            return billService.getRenderStats();
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getPdfCacheStats() {
+        try{
+            return billService.getPdfCacheStats();
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getReconcileReport() {
+        try{
+            return billService.getReconcileReport();
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
     /**
      * @param id
      * @return
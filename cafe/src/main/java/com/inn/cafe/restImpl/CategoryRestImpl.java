@@ -1,17 +1,15 @@
 package com.inn.cafe.restImpl;
 
-import com.inn.cafe.POJO.Category;
 import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.rest.CategoryRest;
 import com.inn.cafe.service.CategoryService;
 import com.inn.cafe.utils.CafeUtils;
+import com.inn.cafe.utils.EncodedJson;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -35,16 +33,18 @@ public class CategoryRestImpl implements CategoryRest {
 
     /**
      * @param filterValue
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<Category>> getAllCategory(String filterValue) {
+    public ResponseEntity<byte[]> getAllCategory(String filterValue, String acceptEncoding, String ifNoneMatch) {
         try {
-            return categoryService.getAllCategory(filterValue);
+            return categoryService.getAllCategory(filterValue, acceptEncoding, ifNoneMatch);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
-        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -5,7 +5,9 @@ import com.inn.cafe.service.DashboardService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,4 +21,54 @@ public class DashboardRestImpl implements DashboardRest {
     public ResponseEntity<Map<String, Object>> getCount() {
         return dashboardService.getCount();
     }
+
+    /**
+     * @param granularity
+     * @param from
+     * @param to
+     * @param groupBy
+     * @return
+     */
+    @Override
+    public ResponseEntity<List<Map<String, Object>>> getSales(String granularity, String from, String to, String groupBy) {
+        return dashboardService.getSales(granularity, from, to, groupBy);
+    }
+
+    /**
+     * @param window
+     * @param by
+     * @param limit
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getTopProducts(String window, String by, Integer limit) {
+        return dashboardService.getTopProducts(window, by, limit);
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getUniqueCustomers(String from, String to) {
+        return dashboardService.getUniqueCustomers(from, to);
+    }
+
+    /**
+     * @param names
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getWidgets(String names) {
+        return dashboardService.getWidgets(names);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<SseEmitter> getStream() {
+        return dashboardService.getStream();
+    }
 }
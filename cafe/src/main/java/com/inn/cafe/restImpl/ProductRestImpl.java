@@ -4,14 +4,13 @@ import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.rest.ProductRest;
 import com.inn.cafe.service.ProductService;
 import com.inn.cafe.utils.CafeUtils;
+import com.inn.cafe.utils.EncodedJson;
 import com.inn.cafe.wrapper.ProductWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -34,16 +33,18 @@ public class ProductRestImpl implements ProductRest {
     }
 
     /**
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<ProductWrapper>> getAllProduct() {
+    public ResponseEntity<byte[]> getAllProduct(String acceptEncoding, String ifNoneMatch) {
         try{
-            return productService.getAllProduct();
+            return productService.getAllProduct(acceptEncoding, ifNoneMatch);
         } catch (Exception ex){
             ex.printStackTrace();
         }
-        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -90,16 +91,18 @@ public class ProductRestImpl implements ProductRest {
 
     /**
      * @param id
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<ProductWrapper>> getByCategory(Integer id) {
+    public ResponseEntity<byte[]> getByCategory(Integer id, String acceptEncoding, String ifNoneMatch) {
         try{
-            return productService.getByCategory(id);
+            return productService.getByCategory(id, acceptEncoding, ifNoneMatch);
         } catch (Exception ex){
             ex.printStackTrace();
         }
-        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
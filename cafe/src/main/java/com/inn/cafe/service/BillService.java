@@ -1,15 +1,37 @@
 package com.inn.cafe.service;
 
-import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.wrapper.BillWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 public interface BillService {
     ResponseEntity<String> generateReport(Map<String, Object> requestMap);
-    ResponseEntity<List<Bill>> getBills();
+    ResponseEntity<String> generateReport(Map<String, Object> requestMap, String idempotencyKey);
+    ResponseEntity<List<Map<String, Object>>> batchInsert(List<Map<String, Object>> requestList);
+    ResponseEntity<List<BillWrapper>> getBills(Integer cursor, Integer limit, Boolean includeDetails);
+    ResponseEntity<StreamingResponseBody> exportBills(String format, Integer fromId, Integer toId);
+
+    ResponseEntity<StreamingResponseBody> archivePdfs(Map<String, Object> requestMap);
+
     ResponseEntity<byte[]>  getPdf(Map<String, Object> requestMap);
 
+    ResponseEntity<StreamingResponseBody> streamPdf(Map<String, Object> requestMap);
+
+    ResponseEntity<Map<String, Object>> getStatus(String uuid);
+
+    ResponseEntity<Map<String, Object>> getRenderStats();
+
+    ResponseEntity<Map<String, Object>> getPdfCacheStats();
+
+    ResponseEntity<Map<String, Object>> getReconcileReport();
+
+    void downloadPdf(String uuid, HttpServletRequest request, HttpServletResponse response) throws IOException;
+
     ResponseEntity<String> deleteBill(Integer id);
 }
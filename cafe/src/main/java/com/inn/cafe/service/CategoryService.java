@@ -1,16 +1,14 @@
 package com.inn.cafe.service;
 
-import com.inn.cafe.POJO.Category;
 import org.springframework.http.ResponseEntity;
 
-import java.util.List;
 import java.util.Map;
 
 public interface CategoryService {
 
     ResponseEntity<String> addNewCategory(Map<String, String> requestMap);
 
-    ResponseEntity<List<Category>> getAllCategory(String filterValue);
+    ResponseEntity<byte[]> getAllCategory(String filterValue, String acceptEncoding, String ifNoneMatch);
 
     ResponseEntity<String> updateCategory(Map<String, String> requestMap);
 }
@@ -1,9 +1,21 @@
 package com.inn.cafe.service;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Map;
 
 public interface DashboardService {
     ResponseEntity<Map<String, Object>> getCount();
+
+    ResponseEntity<List<Map<String, Object>>> getSales(String granularity, String from, String to, String groupBy);
+
+    ResponseEntity<Map<String, Object>> getTopProducts(String window, String by, Integer limit);
+
+    ResponseEntity<Map<String, Object>> getUniqueCustomers(String from, String to);
+
+    ResponseEntity<Map<String, Object>> getWidgets(String names);
+
+    ResponseEntity<SseEmitter> getStream();
 }
@@ -3,14 +3,13 @@ package com.inn.cafe.service;
 import com.inn.cafe.wrapper.ProductWrapper;
 import org.springframework.http.ResponseEntity;
 
-import java.util.List;
 import java.util.Map;
 
 public interface ProductService {
 
     ResponseEntity<String> addNewProduct(Map<String, String> request);
 
-    ResponseEntity<List<ProductWrapper>> getAllProduct();
+    ResponseEntity<byte[]> getAllProduct(String acceptEncoding, String ifNoneMatch);
 
     ResponseEntity<String> updateProduct(Map<String, String> requestMap);
 
@@ -18,7 +17,7 @@ public interface ProductService {
 
     ResponseEntity<String> updateStatus(Map<String, String> requestMap);
 
-    ResponseEntity<List<ProductWrapper>> getByCategory(Integer id);
+    ResponseEntity<byte[]> getByCategory(Integer id, String acceptEncoding, String ifNoneMatch);
 
     ResponseEntity<ProductWrapper> getProductById(Integer id);
 }
@@ -2,45 +2,148 @@ package com.inn.cafe.serviceImpl;
 
 import ch.qos.logback.core.encoder.EchoEncoder;
 import com.fasterxml.jackson.databind.ser.Serializers;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
 import com.inn.cafe.JWT.JwtFilter;
 import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.POJO.BillItem;
 import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.dao.BillDao;
+import com.inn.cafe.dao.BillItemDao;
+import com.inn.cafe.dao.BillJdbcDao;
+import com.inn.cafe.dao.IdempotencyStore;
+import com.inn.cafe.dao.ReceiptStore;
 import com.inn.cafe.service.BillService;
+import com.inn.cafe.utils.BillIdGenerator;
 import com.inn.cafe.utils.CafeUtils;
-import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
+import com.inn.cafe.utils.PdfCache;
+import com.inn.cafe.utils.DashboardCounters;
+import com.inn.cafe.utils.ReceiptRebuilder;
+import com.inn.cafe.utils.ReceiptReconciler;
+import com.inn.cafe.utils.ReceiptRenderPool;
+import com.inn.cafe.utils.ReceiptTemplate;
+import com.inn.cafe.utils.SalesRollups;
+import com.inn.cafe.utils.TopSellers;
+import com.inn.cafe.utils.UniqueCustomers;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import com.inn.cafe.wrapper.BillWrapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.*;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.io.IOUtils;
-import org.json.JSONArray;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.parameters.P;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Data
 @Service
 public class BillServiceImpl implements BillService {
+    // Request attributes Tomcat uses to serve a file with sendfile once the servlet returns
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     @Autowired
     JwtFilter jwtFilter;
 
     @Autowired
     BillDao billDao;
+
+    @Autowired
+    BillJdbcDao billJdbcDao;
+
+    @Autowired
+    BillItemDao billItemDao;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    ReceiptRenderPool receiptRenderPool;
+
+    @Autowired
+    PdfCache pdfCache;
+
+    @Autowired
+    ReceiptTemplate receiptTemplate;
+
+    @Autowired
+    ReceiptStore receiptStore;
+
+    @Autowired
+    BillIdGenerator billIdGenerator;
+
+    @Autowired
+    ReceiptRebuilder receiptRebuilder;
+
+    @Autowired
+    IdempotencyStore idempotencyStore;
+
+    @Autowired
+    DashboardCounters dashboardCounters;
+
+    @Autowired
+    SalesRollups salesRollups;
+
+    @Autowired
+    TopSellers topSellers;
+
+    @Autowired
+    UniqueCustomers uniqueCustomers;
+
+    @Autowired
+    ReceiptReconciler receiptReconciler;
     /**
      * @param requestMap
      * @return
@@ -53,53 +156,39 @@ public class BillServiceImpl implements BillService {
             // Generate filename to uniquely identify any pdf
             String fileName;
             if (validateRequestMap(requestMap)){
+                // Parse and validate the line items once, before anything is saved
+                List<BillItemWrapper> items;
+                try {
+                    items = CafeUtils.getBillItemsFromString((String) requestMap.get("productDetails"));
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Invalid productDetails", ex);
+                    return CafeUtils.getResponseEntity(CafeConstants.INVALID_DATA, HttpStatus.BAD_REQUEST);
+                }
                 if(requestMap.containsKey("isGenerate") && !(Boolean) requestMap.get("isGenerate")){
                     //If the data is already in the database, pass the uuid
                     // from the request map.
                     // It also passes value from isGenerate into the filename
                     fileName = (String) requestMap.get("uuid");
+                    if(!ReceiptStore.isValidUuid(fileName)){
+                        return CafeUtils.getResponseEntity(CafeConstants.INVALID_DATA, HttpStatus.BAD_REQUEST);
+                    }
                 } else {
                     // Generate a unique name / id
-                    fileName = CafeUtils.getUUID();
+                    fileName = billIdGenerator.nextUuid();
                     requestMap.put("uuid", fileName);
-                    insertBill(requestMap);
-                }
+                    insertBill(requestMap, items);
 
-                String data = "Name: " + requestMap.get("name") + "\n" + "Contact Number: " + requestMap.get("contactNumber") +
-                        "\n" + "Email: " + requestMap.get("email") + "\n" + "Payment Method: " + requestMap.get("paymentMethod");
-
-                Document document = new Document();
-                PdfWriter.getInstance(document, new FileOutputStream(CafeConstants.STORE_LOCATION+"//"+fileName+".pdf"));
-                document.open();
-                setRectangleInPdf(document);
-
-                // placing the header into the document
-                Paragraph chunk = new Paragraph("Cafe Management System", getFont("Header"));
-                chunk.setAlignment(Element.ALIGN_CENTER);
-                document.add(chunk);
-
-                // Adding a paragraph
-                Paragraph paragraph = new Paragraph(data + "\n \n ", getFont("Data"));
-                document.add(paragraph);
-
-                // Setting columns for the table. We are setting the columns to 5
-                PdfPTable table = new PdfPTable(5);
-                // Adding header to the tables
-                addTableHeader(table);
-                // Adding data to the table
-                JSONArray jsonArray = CafeUtils.getJsonArrayFromString((String) requestMap.get("productDetails"));
-
-                // Loop to add rows into data tables
-                for(int i = 0; i <jsonArray.length(); i++){
-                    addRows(table, CafeUtils.getMapFromJson(jsonArray.getString(i)));
+                    // In async mode the bill is saved and the pdf is rendered by the render pool.
+                    // The client polls /bill/status/{uuid} until it is ready.
+                    if(isAsync(requestMap)){
+                        if(receiptRenderPool.submit(fileName, () -> writeReportToFile(requestMap, items, fileName))){
+                            return new ResponseEntity<>("{\"uuid\":\"" + fileName + "\",\"status\":\"" + ReceiptRenderPool.QUEUED + "\"}", HttpStatus.ACCEPTED);
+                        }
+                        // The queue is full, render on this thread so the bill still gets its pdf
+                    }
                 }
-                document.add(table);
-
-                Paragraph footer = new Paragraph("Total: "+requestMap.get("totalAmount")+"\n"
-                + "Thank you for visiting. Please visit again!!", getFont("Data"));
 
-                document.add(footer);
-                document.close();
+                writeReportToFile(requestMap, items, fileName);
 
                 return new ResponseEntity<>("{\"uuid\":\"" + fileName + "\"}", HttpStatus.OK);
 
@@ -113,76 +202,109 @@ public class BillServiceImpl implements BillService {
         return CafeUtils.getResponseEntity(CafeConstants.SOMETHING_WENT_WRONG, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * @param requestMap
+     * @param idempotencyKey
+     * @return
+     */
+    @Override
+    public ResponseEntity<String> generateReport(Map<String, Object> requestMap, String idempotencyKey) {
+        if(idempotencyKey == null || idempotencyKey.isBlank()){
+            return generateReport(requestMap);
+        }
+        try {
+            if(idempotencyKey.length() > 100){
+                return CafeUtils.getResponseEntity("Idempotency-Key is too long.", HttpStatus.BAD_REQUEST);
+            }
+            // Keys are per user, one user can never get another user's bill back
+            String key = jwtFilter.getCurrentUser() + ":" + idempotencyKey;
+            // Taken before generateReport adds the uuid to the map
+            String fingerprint = Hashing.murmur3_128()
+                    .hashString(objectMapper.writeValueAsString(new TreeMap<>(requestMap)), StandardCharsets.UTF_8)
+                    .toString();
+            IdempotencyStore.StoredResponse stored = idempotencyStore.execute(key, fingerprint, () -> {
+                ResponseEntity<String> response = generateReport(requestMap);
+                return new IdempotencyStore.StoredResponse(response.getStatusCode().value(), response.getBody(), fingerprint, false);
+            });
+            if(stored == null){
+                return CafeUtils.getResponseEntity("A request with this Idempotency-Key is still in progress.", HttpStatus.CONFLICT);
+            }
+            if(!fingerprint.equals(stored.fingerprint())){
+                return CafeUtils.getResponseEntity("Idempotency-Key was already used for a different request.", HttpStatus.UNPROCESSABLE_ENTITY);
+            }
+            return ResponseEntity.status(stored.status())
+                    .header(CafeConstants.IDEMPOTENT_REPLAYED_HEADER, String.valueOf(stored.replayed()))
+                    .body(stored.body());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return CafeUtils.getResponseEntity(CafeConstants.SOMETHING_WENT_WRONG, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
 
 
-    private void addRows(PdfPTable table, Map<String, Object> data) {
-        log.info("Inside addRows");
-        table.addCell((String) data.get("name"));
-        table.addCell((String) data.get("category"));
-        table.addCell((String) data.get("quantity"));
-        table.addCell(Double.toString((Double)data.get("price")));
-        table.addCell(Double.toString((Double)data.get("total")));
+    private void writeReportToFile(Map<String, Object> requestMap, List<BillItemWrapper> items, String fileName) throws Exception {
+        // The store only publishes the pdf once it has been rendered completely
+        receiptStore.write(fileName, outputStream -> receiptTemplate.render(requestMap, items, outputStream));
     }
 
-    private void addTableHeader(PdfPTable table) {
-        log.info("Inside addTableHeader");
-        Stream.of("Name", "Category", "Quantity","Price","Sub Total")
-                // This loops and creates the respective columns from Name to Category to Quantity e.t.c.
-                .forEach(columnTitle->{
-                    PdfPCell header = new PdfPCell();
-                    header.setBackgroundColor(BaseColor.LIGHT_GRAY);
-                    header.setBorderWidth(2);
-                    header.setPhrase(new Phrase(columnTitle));
-                    header.setBackgroundColor(BaseColor.YELLOW);
-                    header.setHorizontalAlignment(Element.ALIGN_CENTER);
-                    header.setVerticalAlignment(Element.ALIGN_CENTER);
-                    table.addCell(header);
-                });
+    private boolean isAsync(Map<String, Object> requestMap) {
+        Object isAsync = requestMap.get("isAsync");
+        return Boolean.TRUE.equals(isAsync) || "true".equalsIgnoreCase(String.valueOf(isAsync));
     }
 
-    private Font getFont(String type) {
-        log.info("Inside getFont");
-        switch (type){
-            case "Header":
-                Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLDOBLIQUE, 18, BaseColor.BLACK);
-                headerFont.setStyle(Font.BOLD);
-                return headerFont;
-            case "Data":
-                Font dataFont = FontFactory.getFont(FontFactory.TIMES_ROMAN, 11, BaseColor.BLACK);
-                dataFont.setStyle(Font.BOLD);
-                return dataFont;
-            default:
-                return new Font();
-        }
+    // Throws when the bill was not saved. The caller must then not render a receipt or report the uuid,
+    // and the 5xx it answers releases the Idempotency-Key so the client can retry.
+    private void insertBill(Map<String, Object> requestMap, List<BillItemWrapper> items) {
+        // The bill and its line items are written in the same transaction
+        Bill bill = transactionTemplate.execute(status -> {
+            Bill saved = billDao.save(getBillFromMap(requestMap));
+            billJdbcDao.insertBillItems(List.of(saved), List.of(items));
+            return saved;
+        });
+        recordAggregates(List.of(bill), List.of(items));
     }
 
-    private void setRectangleInPdf(Document document) throws DocumentException {
-        log.info("Inside setRectangleInPdf");
-        Rectangle rect = new Rectangle(577,825,18,15);
-        rect.enableBorderSide(1);
-        rect.enableBorderSide(2);
-        rect.enableBorderSide(4);
-        rect.enableBorderSide(8);
-        rect.setBorderColor(BaseColor.BLACK);
-        rect.setBorderWidth(1);
-        document.add(rect);
+    // After the commit: the bills are saved, so a failure here is logged and must not fail the request
+    private void recordAggregates(List<Bill> bills, List<List<BillItemWrapper>> items) {
+        try {
+            for (int i = 0; i < bills.size(); i++) {
+                salesRollups.record(bills.get(i), items.get(i));
+                topSellers.record(items.get(i));
+                uniqueCustomers.record(bills.get(i));
+            }
+        } catch (Exception ex) {
+            log.error("Updating the dashboard aggregates for {} bills failed", bills.size(), ex);
+        }
+        // Last, it bumps the dashboard version and the stream reads the sales once it sees the new version
+        dashboardCounters.billsAdded(bills.size());
     }
 
-    private void insertBill(Map<String, Object> requestMap) {
+    // After the commit, like recordAggregates. The sales rollups are exact and take the bill back out.
+    // The top sellers and unique customer sketches cannot subtract, so they are insert-only and keep
+    // counting a deleted bill until its window ends (an hour or a day for top sellers, for good in the
+    // customer sketches).
+    private void removeAggregates(Bill bill, List<BillItem> items) {
         try {
-            Bill bill = new Bill();
-            bill.setUuid((String) requestMap.get("uuid"));
-            bill.setName((String) requestMap.get("name"));
-            bill.setEmail((String) requestMap.get("email"));
-            bill.setContactNumber((String) requestMap.get("contactNumber"));
-            bill.setPaymentMethod((String) requestMap.get("paymentMethod"));
-            bill.setTotal(Integer.parseInt((String) requestMap.get("totalAmount")));
-            bill.setProductDetails((String) requestMap.get("productDetails"));
-            bill.setCreatedBy(jwtFilter.getCurrentUser());
-            billDao.save(bill);
-        } catch (Exception ex){
-            ex.printStackTrace();
+            salesRollups.remove(bill, items);
+        } catch (Exception ex) {
+            log.error("Taking bill {} out of the sales rollups failed", bill.getId(), ex);
         }
+        dashboardCounters.billDeleted();
+    }
+
+    private Bill getBillFromMap(Map<String, Object> requestMap) {
+        Bill bill = new Bill();
+        bill.setUuid((String) requestMap.get("uuid"));
+        bill.setName((String) requestMap.get("name"));
+        bill.setEmail((String) requestMap.get("email"));
+        bill.setContactNumber((String) requestMap.get("contactNumber"));
+        bill.setPaymentMethod((String) requestMap.get("paymentMethod"));
+        bill.setTotal(Integer.parseInt((String) requestMap.get("totalAmount")));
+        bill.setProductDetails((String) requestMap.get("productDetails"));
+        bill.setCreatedBy(jwtFilter.getCurrentUser());
+        bill.setCreatedAt(Instant.now());
+        return bill;
     }
 
     private boolean validateRequestMap(Map<String, Object> requestMap) {
@@ -198,16 +320,202 @@ public class BillServiceImpl implements BillService {
      * @return
      */
     @Override
-    public ResponseEntity<List<Bill>> getBills() {
-        List<Bill> list = new ArrayList<>();
+    public ResponseEntity<List<BillWrapper>> getBills(Integer cursor, Integer limit, Boolean includeDetails) {
+        List<BillWrapper> list = new ArrayList<>();
+        // Keyset pagination: each page starts below the last id of the previous one, newest first.
+        // Clients that send neither cursor nor limit (the frontend's bill list) still get every bill with its
+        // details, as before paging.
+        boolean paged = cursor != null || limit != null;
+        int from = cursor == null ? Integer.MAX_VALUE : cursor;
+        int size = limit == null || limit <= 0 ? CafeConstants.DEFAULT_PAGE_SIZE : Math.min(limit, CafeConstants.MAX_PAGE_SIZE);
+        Pageable page = paged ? PageRequest.of(0, size) : Pageable.unpaged();
+        boolean details = includeDetails == null ? !paged : includeDetails;
         if(jwtFilter.isAdmin()){
             // if the user is an admin, return all bills
-            list = billDao.getAllBills();
+            list = details ? billDao.getBillsPageWithDetails(from, page) : billDao.getBillsPage(from, page);
         } else {
             // if the user is not an admin, just return bills for that particular user alone.
-            list = billDao.getBillsByUserName(jwtFilter.getCurrentUser());
+            String username = jwtFilter.getCurrentUser();
+            list = details ? billDao.getBillsPageByUserNameWithDetails(username, from, page)
+                    : billDao.getBillsPageByUserName(username, from, page);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        // A full page means there may be more, the client passes this back as the cursor
+        if(paged && list.size() == size){
+            headers.add(CafeConstants.NEXT_CURSOR_HEADER, String.valueOf(list.get(list.size() - 1).getId()));
+        }
+        headers.add(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS, CafeConstants.NEXT_CURSOR_HEADER);
+        return new ResponseEntity<>(list, headers, HttpStatus.OK);
+    }
+
+    /**
+     * @param format
+     * @param fromId
+     * @param toId
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportBills(String format, Integer fromId, Integer toId) {
+        log.info("Inside exportBills : format {} ids {} - {}", format, fromId, toId);
+        try {
+            boolean csv = "csv".equalsIgnoreCase(format);
+            if(!csv && format != null && !"ndjson".equalsIgnoreCase(format)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            int from = fromId == null ? 0 : fromId;
+            int to = toId == null ? Integer.MAX_VALUE : toId;
+            // Read on the request thread, the body below runs on another one
+            String username = jwtFilter.isAdmin() ? null : jwtFilter.getCurrentUser();
+
+            StreamingResponseBody body = outputStream -> {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 64 * 1024);
+                if(csv){
+                    writer.write("id,uuid,name,email,contactNumber,paymentMethod,total,productDetails,createdBy\n");
+                }
+                TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+                readOnly.setReadOnly(true);
+                readOnly.executeWithoutResult(status -> {
+                    try (Stream<Bill> bills = username == null ? billDao.streamBills(from, to)
+                            : billDao.streamBillsByUserName(username, from, to)) {
+                        Iterator<Bill> iterator = bills.iterator();
+                        while (iterator.hasNext()) {
+                            Bill bill = iterator.next();
+                            writer.write(csv ? toCsvLine(bill) : objectMapper.writeValueAsString(bill));
+                            writer.write('\n');
+                            // Nothing keeps a reference to the exported bills, so the heap stays flat
+                            entityManager.detach(bill);
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                writer.flush();
+            };
+            return ResponseEntity.ok()
+                    .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : new MediaType("application", "x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"bills." + (csv ? "csv" : "ndjson") + "\"")
+                    .body(body);
+        } catch (Exception ex){
+            ex.printStackTrace();
         }
-        return new ResponseEntity<>(list, HttpStatus.OK);
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param requestMap
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> archivePdfs(Map<String, Object> requestMap) {
+        log.info("Inside archivePdfs : requestMap {}", requestMap);
+        try {
+            List<String> uuids = null;
+            if(requestMap.get("uuids") != null){
+                // Checked here, the zip has already started once the body runs
+                if(!(requestMap.get("uuids") instanceof List<?> requested)){
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                }
+                uuids = new ArrayList<>(requested.size());
+                for(Object uuid : requested){
+                    if(!(uuid instanceof String value) || !ReceiptStore.isValidUuid(value)){
+                        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                    }
+                    uuids.add(value);
+                }
+            }
+            Integer fromId = requestMap.get("fromId") == null ? null : ((Number) requestMap.get("fromId")).intValue();
+            Integer toId = requestMap.get("toId") == null ? null : ((Number) requestMap.get("toId")).intValue();
+            // Users other than admins only ever get their own receipts
+            String username = jwtFilter.isAdmin() ? (String) requestMap.get("user") : jwtFilter.getCurrentUser();
+            if(uuids == null && username == null && fromId == null && toId == null){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            int from = fromId == null ? 0 : fromId;
+            int to = toId == null ? Integer.MAX_VALUE : toId;
+            List<String> requestedUuids = uuids;
+
+            StreamingResponseBody body = outputStream -> {
+                ZipOutputStream zip = new ZipOutputStream(outputStream);
+                TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+                readOnly.setReadOnly(true);
+                readOnly.executeWithoutResult(status -> {
+                    try {
+                        if(requestedUuids != null){
+                            for(List<String> chunk : Lists.partition(requestedUuids, CafeConstants.BILL_BATCH_SIZE)){
+                                for(Bill bill : billDao.findByUuidIn(chunk)){
+                                    if(username == null || username.equals(bill.getCreatedBy())){
+                                        addReceiptToZip(zip, bill);
+                                    }
+                                    entityManager.detach(bill);
+                                }
+                            }
+                        } else {
+                            try (Stream<Bill> bills = username == null ? billDao.streamBills(from, to)
+                                    : billDao.streamBillsByUserName(username, from, to)) {
+                                Iterator<Bill> iterator = bills.iterator();
+                                while (iterator.hasNext()) {
+                                    Bill bill = iterator.next();
+                                    addReceiptToZip(zip, bill);
+                                    entityManager.detach(bill);
+                                }
+                            }
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                zip.finish();
+            };
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("application", "zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"receipts.zip\"")
+                    .body(body);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    // Adds the receipt of the bill to the zip, rendering it into the store first when it is missing.
+    // Pdfs are already compressed, so entries are STORED. That needs the crc up front, which costs one
+    // extra sequential read of the receipt instead of holding it in memory.
+    private void addReceiptToZip(ZipOutputStream zip, Bill bill) throws IOException {
+        String uuid = bill.getUuid();
+        if(!receiptStore.exists(uuid) && !receiptRebuilder.rebuild(bill)){
+            return;
+        }
+        long size = receiptStore.size(uuid);
+        CRC32 crc = new CRC32();
+        try (InputStream inputStream = new CheckedInputStream(receiptStore.openStream(uuid), crc)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        ZipEntry entry = new ZipEntry(uuid + ".pdf");
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(size);
+        entry.setCompressedSize(size);
+        entry.setCrc(crc.getValue());
+        zip.putNextEntry(entry);
+        try (InputStream inputStream = receiptStore.openStream(uuid)) {
+            inputStream.transferTo(zip);
+        }
+        zip.closeEntry();
+    }
+
+    private String toCsvLine(Bill bill) {
+        return bill.getId() + "," + csvField(bill.getUuid()) + "," + csvField(bill.getName()) + "," + csvField(bill.getEmail())
+                + "," + csvField(bill.getContactNumber()) + "," + csvField(bill.getPaymentMethod()) + ","
+                + (bill.getTotal() == null ? "" : bill.getTotal()) + "," + csvField(bill.getProductDetails()) + ","
+                + csvField(bill.getCreatedBy());
+    }
+
+    private String csvField(String value) {
+        if(value == null){
+            return "";
+        }
+        if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0){
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
     }
 
     /**
@@ -221,32 +529,376 @@ public class BillServiceImpl implements BillService {
             // Generating 1 byte array
             byte[] byteArray = new byte[0];
             // Check for uuid. We are not going to generate a new uuid. We are only retrieving it.
-            // Validate the request map too.
-            if(!requestMap.containsKey("uuid") && validateRequestMap(requestMap)){
+            if(!requestMap.containsKey("uuid")){
                 return new ResponseEntity<>(byteArray, HttpStatus.BAD_REQUEST);
             }
-            String filePath = CafeConstants.STORE_LOCATION + "//" + (String) requestMap.get("uuid") + ".pdf";
-            if(CafeUtils.isFileExist(filePath)){
-                byteArray = getByteArray(filePath);
+            String uuid = (String) requestMap.get("uuid");
+            // Memory first, then the receipt store
+            byteArray = pdfCache.get(uuid);
+            if(byteArray != null){
                 return new ResponseEntity<>(byteArray, HttpStatus.OK);
-            } else {
-                requestMap.put("isGenerate", false);
-                generateReport(requestMap);
-                byteArray = getByteArray(filePath);
+            } else if(receiptRebuilder.rebuild(uuid)){
+                // Missing on disk, rendered again from the saved bill rather than from what the client sent
+                byteArray = pdfCache.get(uuid);
                 return new ResponseEntity<>(byteArray, HttpStatus.OK);
+            } else {
+                return new ResponseEntity<>(byteArray, HttpStatus.NOT_FOUND);
             }
+        } catch (IllegalArgumentException ex){
+            // Rejected by the receipt store
+            return new ResponseEntity<>(new byte[0], HttpStatus.BAD_REQUEST);
         } catch (Exception ex){
             ex.printStackTrace();
         }
         return null;
     }
 
-    private byte[] getByteArray(String filePath) throws Exception {
-        File initialFile = new File(filePath);
-        InputStream targetStream = new FileInputStream(initialFile);
-        byte[] byteArray = IOUtils.toByteArray(targetStream);
-        targetStream.close();
-        return byteArray;
+    /**
+     * @param requestMap
+     * @return
+     */
+    @Override
+    public ResponseEntity<StreamingResponseBody> streamPdf(Map<String, Object> requestMap) {
+        log.info("Inside streamPdf : requestMap {}", requestMap);
+        try {
+            if(!requestMap.containsKey("uuid")){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            String uuid = (String) requestMap.get("uuid");
+            StreamingResponseBody body;
+            byte[] cached = pdfCache.getIfPresent(uuid);
+            if(cached != null){
+                // Shared cached copy, nothing new is allocated for this request
+                body = outputStream -> outputStream.write(cached);
+            } else if(receiptStore.exists(uuid)){
+                // Already rendered, copy it to the socket through a small buffer
+                body = outputStream -> {
+                    try (InputStream inputStream = receiptStore.openStream(uuid)) {
+                        if(inputStream != null){
+                            inputStream.transferTo(outputStream);
+                        }
+                    }
+                };
+            } else {
+                Optional<Bill> bill = billDao.findByUuid(uuid);
+                if(bill.isEmpty()){
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+                // Rebuilt from the saved bill, sent from the rendered copy once it is stored
+                body = outputStream -> {
+                    if(!receiptRebuilder.rebuildTo(bill.get(), outputStream)){
+                        throw new IOException("Could not rebuild receipt " + uuid);
+                    }
+                };
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_PDF)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + uuid + ".pdf\"")
+                    .body(body);
+        } catch (IllegalArgumentException ex){
+            // Rejected by the receipt store
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param requestList
+     * @return
+     */
+    @Override
+    public ResponseEntity<List<Map<String, Object>>> batchInsert(List<Map<String, Object>> requestList) {
+        log.info("Inside batchInsert : {} bills", requestList.size());
+        List<Map<String, Object>> results = new ArrayList<>();
+        try {
+            long start = System.nanoTime();
+            List<BatchEntry> chunk = new ArrayList<>(CafeConstants.BILL_BATCH_SIZE);
+            int inserted = 0;
+            for (int i = 0; i < requestList.size(); i++) {
+                Map<String, Object> requestMap = requestList.get(i);
+                Map<String, Object> result = new HashMap<>();
+                result.put("index", i);
+                results.add(result);
+                BatchEntry entry = null;
+                if (requestMap != null && validateRequestMap(requestMap)) {
+                    try {
+                        List<BillItemWrapper> items = CafeUtils.getBillItemsFromString((String) requestMap.get("productDetails"));
+                        requestMap.put("uuid", billIdGenerator.nextUuid());
+                        entry = new BatchEntry(requestMap, getBillFromMap(requestMap), items, result);
+                    } catch (Exception ex) {
+                        log.warn("Invalid bill at index {}", i, ex);
+                    }
+                }
+                if (entry == null) {
+                    result.put("status", HttpStatus.BAD_REQUEST.value());
+                    result.put("message", CafeConstants.INVALID_DATA);
+                    continue;
+                }
+                chunk.add(entry);
+                if (chunk.size() == CafeConstants.BILL_BATCH_SIZE) {
+                    inserted += flushBatch(chunk);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                inserted += flushBatch(chunk);
+            }
+            long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            log.info("Batch inserted {} of {} bills in {} ms ({} bills/s)", inserted, requestList.size(), elapsedMs,
+                    inserted * 1000L / elapsedMs);
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(results, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    // A validated bill of a batch request together with the result reported back for it
+    private static class BatchEntry {
+        final Map<String, Object> requestMap;
+        final Bill bill;
+        final List<BillItemWrapper> items;
+        final Map<String, Object> result;
+
+        BatchEntry(Map<String, Object> requestMap, Bill bill, List<BillItemWrapper> items, Map<String, Object> result) {
+            this.requestMap = requestMap;
+            this.bill = bill;
+            this.items = items;
+            this.result = result;
+        }
+    }
+
+    // Sends one chunk to the database, fills in the per-item results and queues the pdfs.
+    // A failing chunk is rolled back as a whole and each of its items is reported as failed.
+    private int flushBatch(List<BatchEntry> chunk) {
+        int inserted = 0;
+        try {
+            List<Bill> bills = new ArrayList<>(chunk.size());
+            List<List<BillItemWrapper>> items = new ArrayList<>(chunk.size());
+            for (BatchEntry entry : chunk) {
+                bills.add(entry.bill);
+                items.add(entry.items);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                billJdbcDao.insertBills(bills);
+                billJdbcDao.insertBillItems(bills, items);
+            });
+            recordAggregates(bills, items);
+            for (BatchEntry entry : chunk) {
+                String uuid = entry.bill.getUuid();
+                entry.result.put("status", HttpStatus.OK.value());
+                entry.result.put("id", entry.bill.getId());
+                entry.result.put("uuid", uuid);
+                // The pdfs are not needed right away, render them if the pool has room
+                entry.result.put("renderQueued", receiptRenderPool.submit(uuid,
+                        () -> writeReportToFile(entry.requestMap, entry.items, uuid)));
+            }
+            inserted = chunk.size();
+        } catch (Exception ex) {
+            log.error("Bill batch of {} failed", chunk.size(), ex);
+            for (BatchEntry entry : chunk) {
+                entry.result.put("status", HttpStatus.INTERNAL_SERVER_ERROR.value());
+                entry.result.put("message", CafeConstants.SOMETHING_WENT_WRONG);
+            }
+        }
+        chunk.clear();
+        return inserted;
+    }
+
+    /**
+     * @param uuid
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getStatus(String uuid) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("uuid", uuid);
+        try {
+            String status = receiptRenderPool.getStatus(uuid);
+            if(status == null){
+                // The pool forgets finished jobs, the receipt store is the source of truth for them
+                if(!receiptStore.exists(uuid)){
+                    return new ResponseEntity<>(map, HttpStatus.NOT_FOUND);
+                }
+                status = ReceiptRenderPool.READY;
+            }
+            map.put("status", status);
+            return new ResponseEntity<>(map, HttpStatus.OK);
+        } catch (IllegalArgumentException ex){
+            // Rejected by the receipt store
+            return new ResponseEntity<>(map, HttpStatus.BAD_REQUEST);
+        } catch (Exception ex){
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(map, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getRenderStats() {
+        return new ResponseEntity<>(receiptRenderPool.getStats(), HttpStatus.OK);
+    }
+
+    /**
+     * @param uuid
+     * @param request
+     * @param response
+     */
+    @Override
+    public void downloadPdf(String uuid, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.info("Inside downloadPdf : uuid {}", uuid);
+        long length;
+        try {
+            length = receiptStore.size(uuid);
+        } catch (IllegalArgumentException ex){
+            // Rejected by the receipt store
+            response.sendError(HttpStatus.BAD_REQUEST.value());
+            return;
+        }
+        if(length < 0 && receiptRebuilder.rebuild(uuid)){
+            length = receiptStore.size(uuid);
+        }
+        if(length < 0){
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        // Receipts are rewritten by generateReport and rebuilds, so the client revalidates every time and the
+        // ETag changes with the content: size, plus the modification time when the store keeps a file
+        Path filePath = receiptStore.getPath(uuid);
+        String version = filePath == null ? String.valueOf(length)
+                : length + "-" + Files.getLastModifiedTime(filePath).toMillis();
+        String eTag = "\"" + uuid + "-" + version + "\"";
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(MediaType.APPLICATION_PDF_VALUE);
+
+        if(eTagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)){
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = length - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // A range is only honoured for the same content the client has part of
+        if(range != null && (ifRange == null || ifRange.equals(eTag))){
+            long[] bounds = parseRange(range, length);
+            if(bounds == null){
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            start = bounds[0];
+            end = bounds[1];
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if("HEAD".equalsIgnoreCase(request.getMethod())){
+            return;
+        }
+
+        if(filePath == null){
+            // The store does not keep one file per receipt, so there is nothing to hand to sendfile
+            byte[] bytes = receiptStore.read(uuid);
+            response.getOutputStream().write(bytes, (int) start, (int) count);
+            return;
+        }
+        if(Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))){
+            // Tomcat hands the file to the kernel (sendfile) after the request, the bytes never enter the JVM
+            request.setAttribute(SENDFILE_FILENAME, filePath.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                long transferred = fileChannel.transferTo(position, end + 1 - position, target);
+                if(transferred == 0){
+                    // The file got shorter than the Content-Length we already sent, give up instead of spinning
+                    throw new IOException("Receipt " + uuid + " ended at " + position + " of " + length + " bytes");
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private boolean eTagMatches(String ifNoneMatch, String eTag) {
+        if(ifNoneMatch == null){
+            return false;
+        }
+        for(String candidate : ifNoneMatch.split(",")){
+            String value = candidate.trim();
+            if(value.startsWith("W/")){
+                value = value.substring(2);
+            }
+            if(value.equals("*") || value.equals(eTag)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Parses a single "bytes=start-end", "bytes=start-" or "bytes=-suffix" range.
+    // Returns the inclusive bounds, or null when the range cannot be served.
+    private long[] parseRange(String range, long length) {
+        if(!range.startsWith("bytes=") || range.contains(",")){
+            return null;
+        }
+        try {
+            String spec = range.substring("bytes=".length()).trim();
+            int dash = spec.indexOf('-');
+            if(dash < 0){
+                return null;
+            }
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if(first.isEmpty()){
+                long suffix = Long.parseLong(last);
+                if(suffix <= 0){
+                    return null;
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+            }
+            if(start > end || start >= length){
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException ex){
+            return null;
+        }
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getPdfCacheStats() {
+        return new ResponseEntity<>(pdfCache.getStats(), HttpStatus.OK);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getReconcileReport() {
+        return new ResponseEntity<>(receiptReconciler.getReport(), HttpStatus.OK);
     }
 
     /**
@@ -256,9 +908,22 @@ public class BillServiceImpl implements BillService {
     @Override
     public ResponseEntity<String> deleteBill(Integer id) {
         try {
-            Optional optional = billDao.findById(id);
+            Optional<Bill> optional = billDao.findById(id);
             if(!optional.isEmpty()){
-                billDao.deleteById(id);
+                Bill bill = optional.get();
+                // The line items go with the bill, or they would keep counting in the per-product sales
+                List<BillItem> items = transactionTemplate.execute(status -> {
+                    List<BillItem> lines = billItemDao.findByBillId(bill.getId());
+                    billItemDao.deleteByBillId(bill.getId());
+                    // delete(entity) reuses the bill we just loaded, deleteById would select it again
+                    billDao.delete(bill);
+                    return lines;
+                });
+                removeAggregates(bill, items);
+                // Store first: evicting first would let a concurrent read put the pdf back in the cache from
+                // the store just before it is deleted
+                receiptStore.delete(bill.getUuid());
+                pdfCache.evict(bill.getUuid());
                 return CafeUtils.getResponseEntity("Bill Deleted Successfully", HttpStatus.OK);
             }
             return CafeUtils.getResponseEntity("Bill id does not exist", HttpStatus.OK);
@@ -7,14 +7,15 @@ import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.dao.CategoryDao;
 import com.inn.cafe.service.CategoryService;
 import com.inn.cafe.utils.CafeUtils;
+import com.inn.cafe.utils.DashboardCounters;
+import com.inn.cafe.utils.EncodedJson;
+import com.inn.cafe.utils.ProductCatalog;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -27,6 +28,12 @@ public class CategoryServiceImpl implements CategoryService {
 
     @Autowired
     JwtFilter jwtFilter;
+
+    @Autowired
+    DashboardCounters dashboardCounters;
+
+    @Autowired
+    ProductCatalog productCatalog;
     /**
      * @param requestMap
      * @return
@@ -37,6 +44,8 @@ public class CategoryServiceImpl implements CategoryService {
             if(jwtFilter.isAdmin()){
                 if(validateCategoryMap(requestMap, false)){
                     categoryDao.save(getCategoryFromMap(requestMap, false));
+                    dashboardCounters.categoryAdded();
+                    productCatalog.refresh();
                     return CafeUtils.getResponseEntity("Category Added Successfully", HttpStatus.OK);
                 }
             } else{
@@ -72,21 +81,24 @@ public class CategoryServiceImpl implements CategoryService {
 
     /**
      * @param filterValue
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<Category>> getAllCategory(String filterValue) {
+    public ResponseEntity<byte[]> getAllCategory(String filterValue, String acceptEncoding, String ifNoneMatch) {
         try {
-            // If we don't get a value we just find all of them. findAll is provided by JPA repository
-            if(!Strings.isNullOrEmpty(filterValue)&&filterValue.equalsIgnoreCase("true")) {
-                log.info("Inside if");
-                return new ResponseEntity<List<Category>>(categoryDao.getAllCategory(), HttpStatus.OK);
+            // The catalog version covers the categories too, so this is answered without reading them
+            if(productCatalog.isNotModified(ifNoneMatch)){
+                return EncodedJson.notModified(productCatalog.getETag());
             }
-            return new ResponseEntity<>(categoryDao.findAll(), HttpStatus.OK);
+            // filterValue=true only returns the categories that have an active product, otherwise all of them
+            boolean activeOnly = !Strings.isNullOrEmpty(filterValue) && filterValue.equalsIgnoreCase("true");
+            return productCatalog.getCategoriesJson(activeOnly).toResponseEntity(acceptEncoding, HttpStatus.OK);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
-        return new ResponseEntity<List<Category>>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -104,6 +116,8 @@ public class CategoryServiceImpl implements CategoryService {
                     Optional optional = categoryDao.findById(Integer.parseInt(requestMap.get("id")));
                     if(!optional.isEmpty()){
                         categoryDao.save(getCategoryFromMap(requestMap, true));
+                        // Categories are in the catalog and products carry their category name
+                        productCatalog.refresh();
                         return CafeUtils.getResponseEntity("Category Updated Successfully", HttpStatus.OK);
                     } else {
                         return CafeUtils.getResponseEntity("Category id does not exist", HttpStatus.OK);
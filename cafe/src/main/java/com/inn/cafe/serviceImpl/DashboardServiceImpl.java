@@ -1,39 +1,194 @@
 package com.inn.cafe.serviceImpl;
 
-import com.inn.cafe.dao.BillDao;
-import com.inn.cafe.dao.CategoryDao;
-import com.inn.cafe.dao.ProductDao;
+import com.inn.cafe.dao.SalesRollupJdbcDao;
 import com.inn.cafe.service.DashboardService;
+import com.inn.cafe.utils.DashboardAggregator;
+import com.inn.cafe.utils.DashboardCounters;
+import com.inn.cafe.utils.DashboardStream;
+import com.inn.cafe.utils.SalesRollups;
+import com.inn.cafe.utils.TopSellers;
+import com.inn.cafe.utils.UniqueCustomers;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 
 @Service
 public class DashboardServiceImpl implements DashboardService {
-    // We need to autowire all the dao here...
+    // Counts are kept in memory by the services that add and delete rows
     @Autowired
-    CategoryDao categoryDao;
+    DashboardCounters dashboardCounters;
 
     @Autowired
-    ProductDao productDao;
+    SalesRollups salesRollups;
 
     @Autowired
-    BillDao billDao;
+    TopSellers topSellers;
 
+    @Autowired
+    UniqueCustomers uniqueCustomers;
+
+    @Autowired
+    DashboardAggregator dashboardAggregator;
+
+    @Autowired
+    DashboardStream dashboardStream;
+
+    @Autowired
+    Environment environment;
+
+    @Value("${cafe.dashboard.widget-timeout-ms:2000}")
+    private long widgetTimeoutMillis;
 
     /**
      * @return
      */
     @Override
     public ResponseEntity<Map<String, Object>> getCount() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("category", categoryDao.count());
-        map.put("product", productDao.count());
-        map.put("bill", billDao.count());
-        return new ResponseEntity<>(map, HttpStatus.OK);
+        return new ResponseEntity<>(dashboardCounters.getCounts(), HttpStatus.OK);
+    }
+
+    /**
+     * @param granularity
+     * @param from
+     * @param to
+     * @param groupBy
+     * @return
+     */
+    @Override
+    public ResponseEntity<List<Map<String, Object>>> getSales(String granularity, String from, String to, String groupBy) {
+        try {
+            String bucket = granularity == null ? SalesRollups.DAY : granularity;
+            if(!SalesRollups.GRANULARITIES.contains(bucket) || !SalesRollupJdbcDao.isGroupable(groupBy)){
+                return new ResponseEntity<>(new ArrayList<>(), HttpStatus.BAD_REQUEST);
+            }
+            LocalDateTime end = to == null ? LocalDate.now().plusDays(1).atStartOfDay() : parseDateTime(to);
+            LocalDateTime start = from == null ? end.minusDays(30) : parseDateTime(from);
+            // A range that starts inside a bucket still includes that bucket
+            start = SalesRollups.bucketStart(bucket, start);
+            return new ResponseEntity<>(salesRollups.query(bucket, start, end, groupBy), HttpStatus.OK);
+        } catch (DateTimeParseException ex) {
+            return new ResponseEntity<>(new ArrayList<>(), HttpStatus.BAD_REQUEST);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param window
+     * @param by
+     * @param limit
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getTopProducts(String window, String by, Integer limit) {
+        try {
+            String range = window == null ? TopSellers.HOUR : window;
+            String dimension = by == null ? TopSellers.PRODUCT : by;
+            int size = limit == null ? 10 : limit;
+            if(!List.of(TopSellers.HOUR, TopSellers.TODAY).contains(range)
+                    || !List.of(TopSellers.PRODUCT, TopSellers.CATEGORY).contains(dimension)
+                    || size < 1 || size > 100){
+                return new ResponseEntity<>(new HashMap<>(), HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(topSellers.top(range, dimension, size), HttpStatus.OK);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getUniqueCustomers(String from, String to) {
+        try {
+            LocalDate end = to == null ? LocalDate.now() : LocalDate.parse(to);
+            LocalDate start = from == null ? end.minusDays(6) : LocalDate.parse(from);
+            if(start.isAfter(end) || start.plusYears(1).isBefore(end)){
+                return new ResponseEntity<>(new HashMap<>(), HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(uniqueCustomers.count(start, end), HttpStatus.OK);
+        } catch (DateTimeParseException ex) {
+            return new ResponseEntity<>(new HashMap<>(), HttpStatus.BAD_REQUEST);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @param names
+     * @return
+     */
+    @Override
+    public ResponseEntity<Map<String, Object>> getWidgets(String names) {
+        try {
+            Map<String, Callable<Object>> available = getAvailableWidgets();
+            List<String> requested = names == null || names.isBlank()
+                    ? new ArrayList<>(available.keySet())
+                    : Arrays.stream(names.split(",")).map(String::trim).distinct().collect(Collectors.toList());
+            if(requested.isEmpty() || !available.keySet().containsAll(requested)){
+                return new ResponseEntity<>(new HashMap<>(), HttpStatus.BAD_REQUEST);
+            }
+            List<DashboardAggregator.Widget> widgets = new ArrayList<>();
+            for (String name : requested) {
+                // cafe.dashboard.widget-timeouts.<name> overrides the default for a single widget
+                long timeout = environment.getProperty("cafe.dashboard.widget-timeouts." + name, Long.class, widgetTimeoutMillis);
+                widgets.add(new DashboardAggregator.Widget(name, available.get(name), timeout));
+            }
+            return new ResponseEntity<>(dashboardAggregator.fetch(widgets).toMap(), HttpStatus.OK);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+        return new ResponseEntity<>(new HashMap<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public ResponseEntity<SseEmitter> getStream() {
+        SseEmitter emitter = dashboardStream.subscribe();
+        if(emitter == null){
+            // Too many open streams, the browser's EventSource retries on its own
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
+
+    // Every widget is independent of the others, so they can all run at the same time
+    private Map<String, Callable<Object>> getAvailableWidgets() {
+        LocalDate today = LocalDate.now();
+        Map<String, Callable<Object>> widgets = new LinkedHashMap<>();
+        widgets.put("counts", () -> dashboardCounters.getCounts());
+        widgets.put("salesToday", () -> salesRollups.query(SalesRollups.HOUR, today.atStartOfDay(), today.plusDays(1).atStartOfDay(), null));
+        widgets.put("topProducts", () -> topSellers.top(TopSellers.HOUR, TopSellers.PRODUCT, 5));
+        widgets.put("topCategories", () -> topSellers.top(TopSellers.TODAY, TopSellers.CATEGORY, 5));
+        widgets.put("uniqueCustomers", () -> uniqueCustomers.count(today.minusDays(6), today));
+        return widgets;
+    }
+
+    private LocalDateTime parseDateTime(String value) {
+        return value.contains("T") ? LocalDateTime.parse(value) : LocalDate.parse(value).atStartOfDay();
     }
 }
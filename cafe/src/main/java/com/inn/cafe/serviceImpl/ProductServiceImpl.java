@@ -7,6 +7,9 @@ import com.inn.cafe.constants.CafeConstants;
 import com.inn.cafe.dao.ProductDao;
 import com.inn.cafe.service.ProductService;
 import com.inn.cafe.utils.CafeUtils;
+import com.inn.cafe.utils.DashboardCounters;
+import com.inn.cafe.utils.EncodedJson;
+import com.inn.cafe.utils.ProductCatalog;
 import com.inn.cafe.wrapper.ProductWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,8 +18,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -30,6 +31,13 @@ public class ProductServiceImpl implements ProductService {
 
     @Autowired
     JwtFilter jwtFilter;
+
+    @Autowired
+    DashboardCounters dashboardCounters;
+
+    // Reads are served from here, every write below refreshes it
+    @Autowired
+    ProductCatalog productCatalog;
     /**
      * @param request
      * @return
@@ -40,6 +48,8 @@ public class ProductServiceImpl implements ProductService {
             if(jwtFilter.isAdmin()){
                 if(validateProductMap(requestMap, false)){
                     productDao.save(getProductFromMap(requestMap, false));
+                    dashboardCounters.productAdded();
+                    productCatalog.refresh();
                     return CafeUtils.getResponseEntity("Product Added Successfully.", HttpStatus.OK);
                 }
                 return CafeUtils.getResponseEntity(CafeConstants.INVALID_DATA, HttpStatus.BAD_REQUEST);
@@ -86,16 +96,21 @@ public class ProductServiceImpl implements ProductService {
     }
 
     /**
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<ProductWrapper>> getAllProduct() {
+    public ResponseEntity<byte[]> getAllProduct(String acceptEncoding, String ifNoneMatch) {
         try{
-           return new ResponseEntity<>(productDao.getAllProduct(), HttpStatus.OK);
+           if(productCatalog.isNotModified(ifNoneMatch)){
+               return EncodedJson.notModified(productCatalog.getETag());
+           }
+           return productCatalog.getAllJson().toResponseEntity(acceptEncoding, HttpStatus.OK);
         } catch (Exception ex){
             ex.printStackTrace();
         }
-        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -120,6 +135,7 @@ public class ProductServiceImpl implements ProductService {
                         // Set the status of the product
                         product.setStatus(optional.get().getStatus());
                         productDao.save(product);
+                        productCatalog.refresh();
                         return CafeUtils.getResponseEntity("Product Updated Successfully", HttpStatus.OK);
                     } else {
                         return CafeUtils.getResponseEntity("Product id does not exist.", HttpStatus.OK);
@@ -150,6 +166,8 @@ public class ProductServiceImpl implements ProductService {
                     //Check if optional is empty
                     if(!optional.isEmpty()){
                         productDao.deleteById(id);
+                        dashboardCounters.productDeleted();
+                        productCatalog.refresh();
                         return CafeUtils.getResponseEntity("Product Deleted Successfully", HttpStatus.OK);
                     } else {
                         return CafeUtils.getResponseEntity("Product id does not exist.", HttpStatus.OK);
@@ -178,6 +196,7 @@ public class ProductServiceImpl implements ProductService {
                 //Check if optional is empty
                 if(!optional.isEmpty()){
                     productDao.updateProductStatus(requestMap.get("status"), Integer.parseInt(requestMap.get("id")));
+                    productCatalog.refresh();
                     return CafeUtils.getResponseEntity("Product Status Updated Successfully", HttpStatus.OK);
                 } else {
                     return CafeUtils.getResponseEntity("Product id does not exist.", HttpStatus.OK);
@@ -194,16 +213,21 @@ public class ProductServiceImpl implements ProductService {
 
     /**
      * @param id
+     * @param acceptEncoding
+     * @param ifNoneMatch
      * @return
      */
     @Override
-    public ResponseEntity<List<ProductWrapper>> getByCategory(Integer id) {
+    public ResponseEntity<byte[]> getByCategory(Integer id, String acceptEncoding, String ifNoneMatch) {
         try{
-            return new ResponseEntity<>(productDao.getProductByCategory(id), HttpStatus.OK);
+            if(productCatalog.isNotModified(ifNoneMatch)){
+                return EncodedJson.notModified(productCatalog.getETag());
+            }
+            return productCatalog.getActiveByCategoryJson(id).toResponseEntity(acceptEncoding, HttpStatus.OK);
         } catch (Exception ex){
             ex.printStackTrace();
         }
-        return new ResponseEntity<>(new ArrayList<>(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return EncodedJson.EMPTY_LIST.toResponseEntity(acceptEncoding, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
     /**
@@ -213,7 +237,7 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public ResponseEntity<ProductWrapper> getProductById(Integer id) {
         try{
-            return new ResponseEntity<>(productDao.getProductById(id), HttpStatus.OK);
+            return new ResponseEntity<>(productCatalog.getById(id), HttpStatus.OK);
         } catch (Exception ex){
             ex.printStackTrace();
         }
@@ -0,0 +1,101 @@
+package com.inn.cafe.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Snowflake style bill ids: 41 bits of milliseconds since EPOCH, 10 bits of node id and a 12 bit sequence.
+// Ids are unique across nodes as long as every node has its own cafe.node.id, and they sort by time.
+//
+// The last issued (timestamp, sequence) pair is packed into one AtomicLong and advanced with a CAS,
+// so there is no lock. When the sequence runs out within a millisecond, or the clock goes backwards,
+// the generator keeps counting from the last value it issued instead of repeating, borrowing milliseconds
+// from the future. It never runs more than cafe.bill-id.max-borrow-ms ahead of the clock, past that it
+// waits for the clock to catch up. A new process waits the same time before its first id, so it cannot
+// reissue ids a previous run on this node had borrowed. A clock that steps back further than that while
+// the node is down is not covered.
+@Slf4j
+@Component
+public class BillIdGenerator {
+
+    // 2024-01-01T00:00:00Z, leaves room for about 69 years of ids
+    static final long EPOCH = 1704067200000L;
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final long nodeId;
+    private final LongSupplier clock;
+    private final long maxBorrowMillis;
+    // (milliseconds since EPOCH << SEQUENCE_BITS) | sequence of the last id handed out
+    private final AtomicLong lastState = new AtomicLong();
+
+    @Autowired
+    public BillIdGenerator(@Value("${cafe.node.id:-1}") long nodeId,
+                           @Value("${cafe.bill-id.max-borrow-ms:1000}") long maxBorrowMillis) throws InterruptedException {
+        this(nodeId < 0 ? nodeIdFromHost() : nodeId, System::currentTimeMillis, maxBorrowMillis);
+        // Ids of the previous run are at most maxBorrowMillis ahead of the time it stopped
+        log.info("Waiting {} ms before issuing bill ids", maxBorrowMillis);
+        Thread.sleep(maxBorrowMillis);
+    }
+
+    BillIdGenerator(long nodeId, LongSupplier clock, long maxBorrowMillis) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("cafe.node.id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        this.maxBorrowMillis = maxBorrowMillis;
+    }
+
+    private static long nodeIdFromHost() {
+        long nodeId = 0;
+        try {
+            nodeId = InetAddress.getLocalHost().getHostName().hashCode() & MAX_NODE_ID;
+        } catch (Exception ex) {
+            log.warn("Could not read the host name for the node id", ex);
+        }
+        log.warn("cafe.node.id is not set, using {} derived from the host name. Set it explicitly when running more than one node.", nodeId);
+        return nodeId;
+    }
+
+    public long nextId() {
+        boolean waited = false;
+        while (true) {
+            long last = lastState.get();
+            long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+            // A new millisecond starts at sequence 0. Otherwise (same millisecond, sequence exhausted
+            // or clock moved back) continue from the last issued value.
+            long next = now > last ? now : last + 1;
+            if ((next >>> SEQUENCE_BITS) - (now >>> SEQUENCE_BITS) > maxBorrowMillis) {
+                if (!waited) {
+                    log.warn("Bill ids are {} ms ahead of the clock, waiting for it to catch up",
+                            (next >>> SEQUENCE_BITS) - (now >>> SEQUENCE_BITS));
+                    waited = true;
+                }
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the clock", ex);
+                }
+                continue;
+            }
+            if (lastState.compareAndSet(last, next)) {
+                long timestamp = next >>> SEQUENCE_BITS;
+                return (timestamp << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    // Bill uuid used for the bill row and as the name of its pdf
+    public String nextUuid() {
+        return "BILL-" + nextId();
+    }
+}
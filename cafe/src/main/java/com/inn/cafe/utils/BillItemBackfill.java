@@ -0,0 +1,70 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.dao.BillDao;
+import com.inn.cafe.dao.BillJdbcDao;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Fills bill_item for bills that were saved before line items were normalised.
+// Walks the bill table by id, one chunk per run, and stops once it finds nothing left to migrate.
+// Bills whose productDetails cannot be parsed are logged and skipped.
+@Slf4j
+@Component
+public class BillItemBackfill {
+
+    @Autowired
+    BillDao billDao;
+
+    @Autowired
+    BillJdbcDao billJdbcDao;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${cafe.bill-item.backfill.chunk-size:500}")
+    private int chunkSize;
+
+    private volatile int cursor = 0;
+    private volatile boolean finished = false;
+
+    @Scheduled(initialDelayString = "${cafe.bill-item.backfill.initial-delay-ms:30000}",
+            fixedDelayString = "${cafe.bill-item.backfill.delay-ms:2000}")
+    public void backfillChunk() {
+        if (finished) {
+            return;
+        }
+        try {
+            List<Bill> chunk = billDao.getBillsWithoutItems(cursor, PageRequest.of(0, chunkSize));
+            if (chunk.isEmpty()) {
+                finished = true;
+                log.info("bill_item backfill finished");
+                return;
+            }
+            List<Bill> bills = new ArrayList<>(chunk.size());
+            List<List<BillItemWrapper>> items = new ArrayList<>(chunk.size());
+            for (Bill bill : chunk) {
+                try {
+                    items.add(CafeUtils.getBillItemsFromString(bill.getProductDetails()));
+                    bills.add(bill);
+                } catch (IllegalArgumentException ex) {
+                    log.warn("Skipping bill {} in bill_item backfill, productDetails is not valid", bill.getId());
+                }
+            }
+            transactionTemplate.executeWithoutResult(status -> billJdbcDao.insertBillItems(bills, items));
+            cursor = chunk.get(chunk.size() - 1).getId();
+            log.info("bill_item backfill migrated {} bills up to id {}", bills.size(), cursor);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+}
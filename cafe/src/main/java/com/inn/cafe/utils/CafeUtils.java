@@ -3,6 +3,9 @@ package com.inn.cafe.utils;
 import com.google.common.base.Strings;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.inn.cafe.wrapper.BillItemWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -10,14 +13,22 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
 import java.io.File;
-import java.util.Date;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
 
 public class CafeUtils {
 
+    // Gson is thread safe, one instance is shared by every request
+    private static final Gson GSON = new Gson();
+    private static final Type MAP_TYPE = new TypeToken<Map<String, Object>>(){}.getType();
+
     private CafeUtils(){
 
     }
@@ -25,12 +36,6 @@ public class CafeUtils {
         return new ResponseEntity<String>( "{\"message\":\""+responseMessage+"\"}", httpStatus);
     }
 
-    public static String getUUID(){
-        Date date = new Date();
-        long time = date.getTime();
-        return "BILL-" + time;
-    }
-
     public static JSONArray getJsonArrayFromString(String data) throws JSONException{
         JSONArray jsonArray = new JSONArray(data);
         return jsonArray;
@@ -39,13 +44,72 @@ public class CafeUtils {
     // Function to convert JSON Array into the form of map string comma object
     public static Map<String, Object> getMapFromJson(String data){
         if(!Strings.isNullOrEmpty(data)){
-            return new Gson().fromJson(data, new TypeToken<Map<String, Object>>(){
-            }.getType());
+            return GSON.fromJson(data, MAP_TYPE);
         }else{
             return new HashMap<>();
         }
     }
 
+    // Reads the productDetails json array straight into typed line items in one pass, validating each
+    // item as it goes. Throws IllegalArgumentException when the json or any of the items is not valid.
+    public static List<BillItemWrapper> getBillItemsFromString(String data){
+        if(Strings.isNullOrEmpty(data)){
+            throw new IllegalArgumentException("productDetails is empty");
+        }
+        List<BillItemWrapper> items = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new StringReader(data))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                items.add(readBillItem(reader));
+            }
+            reader.endArray();
+        } catch (IOException | IllegalStateException | NumberFormatException ex) {
+            throw new IllegalArgumentException("productDetails is not a valid list of items", ex);
+        }
+        return items;
+    }
+
+    private static BillItemWrapper readBillItem(JsonReader reader) throws IOException {
+        BillItemWrapper item = new BillItemWrapper();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String field = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            // Numbers are accepted both as json numbers and as quoted strings, the frontend sends both
+            switch (field) {
+                case "id":
+                    item.setId(reader.nextInt());
+                    break;
+                case "name":
+                    item.setName(reader.nextString());
+                    break;
+                case "category":
+                    item.setCategory(reader.nextString());
+                    break;
+                case "quantity":
+                    item.setQuantity(reader.nextInt());
+                    break;
+                case "price":
+                    item.setPrice(reader.nextDouble());
+                    break;
+                case "total":
+                    item.setTotal(reader.nextDouble());
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (Strings.isNullOrEmpty(item.getName()) || item.getQuantity() == null || item.getQuantity() <= 0
+                || item.getPrice() == null || item.getPrice() < 0 || item.getTotal() == null || item.getTotal() < 0) {
+            throw new IllegalArgumentException("Invalid bill item " + item);
+        }
+        return item;
+    }
+
     public static Boolean isFileExist(String path){
         log.info("Inside isFileExist {}",path);
         try {
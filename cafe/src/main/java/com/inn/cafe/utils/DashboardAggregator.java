@@ -0,0 +1,131 @@
+package com.inn.cafe.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs the queries behind dashboard widgets at the same time, so a dashboard takes as long as its slowest
+// widget instead of the sum of all of them. Every widget has its own timeout. A widget that fails or
+// times out is reported in "errors" and the others are still returned.
+// Runs on virtual threads when the JVM has them (Java 21+), otherwise on a small bounded pool.
+@Slf4j
+@Component
+public class DashboardAggregator {
+
+    public record Widget(String name, Callable<Object> query, long timeoutMillis) {
+    }
+
+    // widgets holds the result of every widget that answered in time, errors the reason for the others
+    public record Result(Map<String, Object> widgets, Map<String, String> errors, long tookMs) {
+
+        public boolean partial() {
+            return !errors.isEmpty();
+        }
+
+        // The body of /dashboard/widgets
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("widgets", widgets);
+            map.put("errors", errors);
+            map.put("partial", partial());
+            map.put("tookMs", tookMs);
+            return map;
+        }
+    }
+
+    @Value("${cafe.dashboard.pool-size:8}")
+    private int poolSize;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        executor = newVirtualThreadExecutor();
+        if (executor != null) {
+            log.info("Dashboard widgets run on virtual threads");
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        // The queue is small on purpose, a dashboard that cannot start its widgets fails fast instead of piling up
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(poolSize * 16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-widget-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Dashboard widgets run on a pool of {} threads", poolSize);
+    }
+
+    // The project targets Java 17, so Executors.newVirtualThreadPerTaskExecutor is looked up at runtime
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException ex) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public Result fetch(List<Widget> widgets) {
+        long start = System.nanoTime();
+        List<Future<Object>> futures = new ArrayList<>(widgets.size());
+        Map<String, Object> results = new LinkedHashMap<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (Widget widget : widgets) {
+            try {
+                futures.add(executor.submit(widget.query()));
+            } catch (RejectedExecutionException ex) {
+                futures.add(null);
+            }
+        }
+        for (int i = 0; i < widgets.size(); i++) {
+            Widget widget = widgets.get(i);
+            Future<Object> future = futures.get(i);
+            if (future == null) {
+                errors.put(widget.name(), "rejected");
+                continue;
+            }
+            // Timeouts count from when the widgets were started, not from when we got round to this one
+            long remaining = widget.timeoutMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            try {
+                results.put(widget.name(), future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException ex) {
+                future.cancel(true);
+                errors.put(widget.name(), "timeout");
+            } catch (ExecutionException ex) {
+                log.error("Dashboard widget {} failed", widget.name(), ex.getCause());
+                errors.put(widget.name(), "failed");
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                errors.put(widget.name(), "interrupted");
+            }
+        }
+        return new Result(results, errors, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+}
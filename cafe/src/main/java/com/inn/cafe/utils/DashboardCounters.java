@@ -0,0 +1,123 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.dao.BillDao;
+import com.inn.cafe.dao.CategoryDao;
+import com.inn.cafe.dao.ProductDao;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Row counts of the category, product and bill tables for /dashboard/details, kept in memory.
+// The services report every row they add or delete, so reading the counts never touches the database.
+// Writes that bypass the services (or a failed commit after we counted) make the numbers drift, so they
+// are compared with count(*) now and then and corrected.
+@Slf4j
+@Component
+public class DashboardCounters {
+
+    @Autowired
+    CategoryDao categoryDao;
+
+    @Autowired
+    ProductDao productDao;
+
+    @Autowired
+    BillDao billDao;
+
+    @Autowired
+    DashboardAggregator dashboardAggregator;
+
+    @Value("${cafe.dashboard.widget-timeout-ms:2000}")
+    private long countTimeoutMillis;
+
+    private final LongAdder categories = new LongAdder();
+    private final LongAdder products = new LongAdder();
+    private final LongAdder bills = new LongAdder();
+    private volatile boolean seeded = false;
+    // Bumped after every change, so readers such as DashboardStream can tell when to look again
+    private final AtomicLong version = new AtomicLong();
+
+    public void categoryAdded() {
+        categories.increment();
+        version.incrementAndGet();
+    }
+
+    public void productAdded() {
+        products.increment();
+        version.incrementAndGet();
+    }
+
+    public void productDeleted() {
+        products.decrement();
+        version.incrementAndGet();
+    }
+
+    public void billsAdded(int count) {
+        bills.add(count);
+        version.incrementAndGet();
+    }
+
+    public void billDeleted() {
+        bills.decrement();
+        version.incrementAndGet();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public Map<String, Object> getCounts() {
+        if (!seeded) {
+            reconcile();
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("category", categories.sum());
+        map.put("product", products.sum());
+        map.put("bill", bills.sum());
+        return map;
+    }
+
+    // The first run seeds the counters, later runs correct drift. A write that lands between the count
+    // and the correction is off by one until the next run.
+    // The three counts run in parallel, a request that has to wait for the seeding waits for the slowest one.
+    @Scheduled(initialDelay = 0, fixedDelayString = "${cafe.dashboard.reconcile-delay-ms:300000}")
+    public synchronized void reconcile() {
+        try {
+            DashboardAggregator.Result result = dashboardAggregator.fetch(List.of(
+                    new DashboardAggregator.Widget("category", categoryDao::count, countTimeoutMillis),
+                    new DashboardAggregator.Widget("product", productDao::count, countTimeoutMillis),
+                    new DashboardAggregator.Widget("bill", billDao::count, countTimeoutMillis)));
+            Map<String, Object> counts = result.widgets();
+            if (result.partial()) {
+                // Seeding with some counts missing would serve zeros, the next request or run tries again
+                log.error("Counting dashboard rows failed: {}", result.errors());
+                return;
+            }
+            correct("category", categories, (Long) counts.get("category"));
+            correct("product", products, (Long) counts.get("product"));
+            correct("bill", bills, (Long) counts.get("bill"));
+            seeded = true;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void correct(String name, LongAdder counter, long actual) {
+        long drift = actual - counter.sum();
+        if (drift != 0) {
+            counter.add(drift);
+            version.incrementAndGet();
+            if (seeded) {
+                log.info("Dashboard {} count was off by {}, corrected to {}", name, drift, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.inn.cafe.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Pushes the dashboard counts and today's sales to every open /dashboard/stream, instead of every browser
+// polling /dashboard/details.
+// Every interval the hub checks DashboardCounters' version. When something changed it builds and serialises
+// one frame, which every subscriber gets. Each frame is the full state, so frames can be skipped safely:
+// - a subscriber holds at most one unsent frame, a newer frame replaces it (at most one frame per interval)
+// - frames are written by a small pool of sender threads, so a slow client never holds up the others
+// - a client that has not finished a write for cafe.dashboard.stream.stall-ms is disconnected
+// Memory is bounded by one frame per subscriber, however slow the clients are. Frames are small, so a client
+// has to stop reading for a long time before its writes fill the socket buffers and block a sender thread.
+// When that happens the write is abandoned: the connection is closed, the thread interrupted, and until the
+// blocked write returns the pool runs one extra thread, so stalled clients never use up the senders.
+// At most max-clients streams are open, a slot is reserved atomically before a stream is added.
+@Slf4j
+@Component
+public class DashboardStream {
+
+    private static final String EVENT_NAME = "dashboard";
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        // The next frame to send. Replaced, never queued.
+        final AtomicReference<Frame> pending = new AtomicReference<>();
+        // When a frame was handed to the sender, 0 when idle
+        volatile long sendingSince = 0;
+        // When the sender started writing, 0 while the frame is still queued. Only this counts as stalled,
+        // a frame waiting behind other subscribers is not this client's fault.
+        volatile long writeStartedAt = 0;
+        // The sender thread of the write in progress
+        volatile Thread sendingThread;
+        // Set once the write in progress is given up on and a replacement sender added
+        boolean abandoned;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Frame frame) {
+            pending.set(frame);
+            schedule();
+        }
+
+        // Only one sender per subscriber at a time, so frames are never written out of order
+        void schedule() {
+            synchronized (this) {
+                if (sendingSince != 0 || pending.get() == null) {
+                    return;
+                }
+                sendingSince = System.currentTimeMillis();
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (Exception ex) {
+                remove(this);
+            }
+        }
+
+        void drain() {
+            Frame frame = pending.getAndSet(null);
+            sendingThread = Thread.currentThread();
+            writeStartedAt = System.currentTimeMillis();
+            try {
+                // Skipped when the subscriber was abandoned while this task waited in the queue
+                if (frame != null && subscribers.contains(this)) {
+                    emitter.send(SseEmitter.event().id(Long.toString(frame.version())).name(EVENT_NAME).data(frame.json()));
+                }
+            } catch (Exception ex) {
+                // Closed by the client, or by abandon()
+                remove(this);
+                return;
+            } finally {
+                boolean wasAbandoned;
+                synchronized (this) {
+                    sendingThread = null;
+                    writeStartedAt = 0;
+                    wasAbandoned = abandoned;
+                    if (abandoned) {
+                        resizeSender(-1);
+                    }
+                }
+                // abandon() only interrupts inside the lock above, so this clears it before the next subscriber
+                Thread.interrupted();
+                if (wasAbandoned) {
+                    complete(emitter);
+                }
+            }
+            if (!subscribers.contains(this)) {
+                return;
+            }
+            synchronized (this) {
+                sendingSince = 0;
+            }
+            // A frame may have arrived while we were writing
+            schedule();
+        }
+    }
+
+    // The write has been blocked for too long: disconnect, and add a sender so the others are not held up
+    private void abandon(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.writeStartedAt == 0 || subscriber.abandoned) {
+                return;
+            }
+            subscriber.abandoned = true;
+            resizeSender(1);
+            Thread thread = subscriber.sendingThread;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+        // Not complete(), it waits for the emitter lock the blocked write holds. The sender completes it once
+        // the write returns.
+        if (subscribers.remove(subscriber)) {
+            clients.decrementAndGet();
+        }
+    }
+
+    // Grow the pool before raising the core size and shrink the core size before the pool, as the executor requires
+    private synchronized void resizeSender(int delta) {
+        int size = sender.getCorePoolSize() + delta;
+        if (delta > 0) {
+            sender.setMaximumPoolSize(size);
+            sender.setCorePoolSize(size);
+        } else {
+            sender.setCorePoolSize(size);
+            sender.setMaximumPoolSize(size);
+        }
+    }
+
+    private record Frame(long version, String json) {
+    }
+
+    @Autowired
+    DashboardCounters dashboardCounters;
+
+    @Autowired
+    SalesRollups salesRollups;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${cafe.dashboard.stream.max-clients:200}")
+    private int maxClients;
+
+    @Value("${cafe.dashboard.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${cafe.dashboard.stream.stall-ms:10000}")
+    private long stallMillis;
+
+    @Value("${cafe.dashboard.stream.heartbeat-ms:25000}")
+    private long heartbeatMillis;
+
+    @Value("${cafe.dashboard.stream.sender-threads:4}")
+    private int senderThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // Open streams plus reserved slots, never above maxClients
+    private final AtomicInteger clients = new AtomicInteger();
+    private volatile Frame latest;
+    private long lastHeartbeat = System.currentTimeMillis();
+    private ThreadPoolExecutor sender;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        // Unbounded queue, but each subscriber has at most one task in it
+        sender = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dashboard-stream-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        sender.shutdownNow();
+    }
+
+    // null when there are already too many subscribers
+    public SseEmitter subscribe() {
+        return subscribe(new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(SseEmitter emitter) {
+        if (!reserveSlot()) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> {
+            if (subscribers.remove(subscriber)) {
+                clients.decrementAndGet();
+            }
+        });
+        emitter.onTimeout(() -> remove(subscriber));
+        emitter.onError(ex -> remove(subscriber));
+        subscribers.add(subscriber);
+        // A new subscriber gets the current state right away instead of at the next change
+        Frame frame = latest;
+        if (frame == null || frame.version() != dashboardCounters.getVersion()) {
+            frame = buildFrame();
+        }
+        if (frame != null) {
+            subscriber.offer(frame);
+        }
+        return emitter;
+    }
+
+    // Checking the count and adding in two steps would let concurrent subscribes go past maxClients
+    private boolean reserveSlot() {
+        while (true) {
+            int current = clients.get();
+            if (current >= maxClients) {
+                return false;
+            }
+            if (clients.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            clients.decrementAndGet();
+            complete(subscriber.emitter);
+        }
+    }
+
+    private static void complete(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception ex) {
+            // Already closed
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cafe.dashboard.stream.interval-ms:2000}")
+    public void publish() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.writeStartedAt;
+            if (since != 0 && now - since > stallMillis) {
+                log.info("Disconnecting a dashboard stream that has not read for {} ms", now - since);
+                abandon(subscriber);
+            }
+        }
+        Frame frame = latest;
+        if (frame == null || frame.version() != dashboardCounters.getVersion()) {
+            frame = buildFrame();
+            if (frame != null) {
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.offer(frame);
+                }
+                lastHeartbeat = now;
+            }
+        } else if (now - lastHeartbeat >= heartbeatMillis) {
+            // Keeps proxies from closing idle connections and finds clients that went away
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(frame);
+            }
+            lastHeartbeat = now;
+        }
+    }
+
+    // Read the version first: a change that lands while we build is in the frame or bumps the version again
+    private synchronized Frame buildFrame() {
+        try {
+            long version = dashboardCounters.getVersion();
+            if (latest != null && latest.version() == version) {
+                return latest;
+            }
+            LocalDate today = LocalDate.now();
+            List<Map<String, Object>> sales = salesRollups.query(SalesRollups.DAY, today.atStartOfDay(),
+                    today.plusDays(1).atStartOfDay(), null);
+            Map<String, Object> map = new HashMap<>();
+            map.put("version", version);
+            map.put("counts", dashboardCounters.getCounts());
+            map.put("salesToday", sales.isEmpty() ? Map.of("quantity", 0, "revenue", 0.0) : sales.get(0));
+            latest = new Frame(version, objectMapper.writeValueAsString(map));
+            return latest;
+        } catch (Exception ex) {
+            log.error("Building the dashboard stream frame failed", ex);
+            return null;
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+}
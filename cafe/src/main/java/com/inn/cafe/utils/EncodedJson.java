@@ -0,0 +1,112 @@
+package com.inn.cafe.utils;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+// A JSON response body serialised and gzipped once, then sent as is to every request that asks for it.
+// gzip is only kept when it is actually smaller. Immutable, the arrays must not be modified.
+// The ETag is weak, so it is the same for the plain and the gzipped body.
+public final class EncodedJson {
+
+    public static final EncodedJson EMPTY_LIST = of("[]".getBytes(StandardCharsets.UTF_8), null);
+
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final String eTag;
+
+    private EncodedJson(byte[] identity, byte[] gzip, String eTag) {
+        this.identity = identity;
+        this.gzip = gzip;
+        this.eTag = eTag;
+    }
+
+    // eTag may be null
+    public static EncodedJson of(byte[] json, String eTag) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        byte[] compressed = out.toByteArray();
+        return new EncodedJson(json, compressed.length < json.length ? compressed : null, eTag);
+    }
+
+    public int getSize() {
+        return identity.length;
+    }
+
+    public int getGzipSize() {
+        return gzip == null ? identity.length : gzip.length;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    // acceptEncoding is the request's Accept-Encoding header
+    public ResponseEntity<byte[]> toResponseEntity(String acceptEncoding, HttpStatus status) {
+        HttpHeaders headers = getCacheHeaders(eTag);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip != null && acceptsGzip(acceptEncoding)) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(gzip, headers, status);
+        }
+        return new ResponseEntity<>(identity, headers, status);
+    }
+
+    // 304 for a client whose copy is still current
+    public static ResponseEntity<byte[]> notModified(String eTag) {
+        return new ResponseEntity<>(getCacheHeaders(eTag), HttpStatus.NOT_MODIFIED);
+    }
+
+    private static HttpHeaders getCacheHeaders(String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        // Caches must not hand a gzipped body to a client that did not ask for one
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (eTag != null) {
+            headers.setETag(eTag);
+            // Clients keep their copy but ask every time whether it is still current
+            headers.setCacheControl("no-cache");
+        }
+        return headers;
+    }
+
+    // gzip (or x-gzip) is listed without q=0, or it is not listed and * is
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Boolean gzip = null;
+        boolean any = false;
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.split(";");
+            String coding = params[0].trim();
+            boolean accepted = true;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        accepted = Double.parseDouble(param.substring(2).trim()) > 0;
+                    } catch (NumberFormatException ex) {
+                        accepted = false;
+                    }
+                }
+            }
+            if (coding.equalsIgnoreCase("gzip") || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = (gzip != null && gzip) || accepted;
+            } else if (coding.equals("*")) {
+                any = accepted;
+            }
+        }
+        return gzip != null ? gzip : any;
+    }
+}
@@ -0,0 +1,142 @@
+package com.inn.cafe.utils;
+
+// HyperLogLog distinct counter over 64 bit hashes.
+// Uses 2^precision one byte registers, so memory is 2^precision bytes and the standard error of an
+// estimate is about 1.04 / sqrt(2^precision):
+//   precision 10 -> 1 KB,  3.3%
+//   precision 12 -> 4 KB,  1.6%
+//   precision 14 -> 16 KB, 0.8%
+// Counters of the same precision merge by taking the larger register, which gives exactly the counter of
+// the combined input. A counter can be folded to a lower precision to merge it with older data.
+// Small cardinalities use linear counting. No large range correction is needed with 64 bit hashes.
+// Not thread safe, callers synchronise.
+public class HyperLogLog {
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        this(precision, new byte[1 << checkPrecision(precision)]);
+    }
+
+    // Wraps registers written by toBytes()
+    public HyperLogLog(int precision, byte[] registers) {
+        if (registers.length != 1 << checkPrecision(precision)) {
+            throw new IllegalArgumentException("Expected " + (1 << precision) + " registers, got " + registers.length);
+        }
+        this.precision = precision;
+        this.registers = registers;
+    }
+
+    private static int checkPrecision(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION);
+        }
+        return precision;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    // Standard error of estimate() relative to the real count
+    public double getRelativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    // The top precision bits pick the register, the position of the first 1 in the rest is what it remembers
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long rest = hash << precision;
+        int rank = rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+        }
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha;
+        switch (m) {
+            case 16:
+                alpha = 0.673;
+                break;
+            case 32:
+                alpha = 0.697;
+                break;
+            case 64:
+                alpha = 0.709;
+                break;
+            default:
+                alpha = 0.7213 / (1 + 1.079 / m);
+        }
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    // The counter this one would have been at a lower precision. The index bits that are dropped become
+    // the leading bits of what the register remembers.
+    public HyperLogLog fold(int lowerPrecision) {
+        if (lowerPrecision == precision) {
+            return copy();
+        }
+        if (lowerPrecision > precision) {
+            throw new IllegalArgumentException("Cannot fold precision " + precision + " up to " + lowerPrecision);
+        }
+        HyperLogLog folded = new HyperLogLog(lowerPrecision);
+        int dropped = precision - lowerPrecision;
+        for (int index = 0; index < registers.length; index++) {
+            if (registers[index] == 0) {
+                continue;
+            }
+            int low = index & ((1 << dropped) - 1);
+            int rank = low != 0 ? Integer.numberOfLeadingZeros(low) - (32 - dropped) + 1 : dropped + registers[index];
+            int target = index >>> dropped;
+            if (rank > folded.registers[target]) {
+                folded.registers[target] = (byte) rank;
+            }
+        }
+        return folded;
+    }
+
+    // A new counter for the union of both, at the lower of the two precisions
+    public static HyperLogLog union(HyperLogLog first, HyperLogLog second) {
+        int lower = Math.min(first.precision, second.precision);
+        HyperLogLog union = first.fold(lower);
+        union.merge(second.fold(lower));
+        return union;
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision, registers.clone());
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+}
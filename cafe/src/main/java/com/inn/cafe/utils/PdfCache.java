@@ -0,0 +1,147 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.dao.ReceiptStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Two tier cache for receipt pdfs. The first tier is an in-heap LRU limited by the total number of bytes
+// it holds, the second tier is the receipt store on disk. Receipts never change once rendered, so the only
+// invalidation needed is when a bill is deleted.
+// A load from the store that was running when its uuid was evicted does not put its bytes in the cache,
+// otherwise a read that started before the delete would bring the deleted receipt back.
+@Slf4j
+@Component
+public class PdfCache {
+
+    @Autowired
+    ReceiptStore receiptStore;
+
+    @Value("${cafe.pdf-cache.max-bytes:33554432}")
+    private long maxBytes;
+
+    // Bigger pdfs are served from disk only so one large bill cannot flush the whole cache
+    @Value("${cafe.pdf-cache.max-entry-bytes:1048576}")
+    private long maxEntryBytes;
+
+    // Access ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, byte[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long currentBytes;
+    // Loads from the store in progress, by uuid. Guarded by entries like the cache itself.
+    private final Map<String, Load> loads = new HashMap<>();
+
+    private static class Load {
+        int readers;
+        boolean evicted;
+    }
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder diskReads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Returns the pdf from memory, or null without touching the disk
+    public byte[] getIfPresent(String uuid) {
+        byte[] bytes;
+        synchronized (entries) {
+            bytes = entries.get(uuid);
+        }
+        if (bytes != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return bytes;
+    }
+
+    // Returns the pdf from memory, falling back to the receipt store. Returns null when neither has it.
+    public byte[] get(String uuid) throws Exception {
+        byte[] bytes = getIfPresent(uuid);
+        if (bytes != null) {
+            return bytes;
+        }
+        Load load;
+        synchronized (entries) {
+            load = loads.computeIfAbsent(uuid, k -> new Load());
+            load.readers++;
+        }
+        try {
+            bytes = receiptStore.read(uuid);
+        } finally {
+            synchronized (entries) {
+                if (bytes != null && !load.evicted) {
+                    putLocked(uuid, bytes);
+                }
+                if (--load.readers == 0) {
+                    loads.remove(uuid);
+                }
+            }
+        }
+        if (bytes != null) {
+            diskReads.increment();
+        }
+        return bytes;
+    }
+
+    public void put(String uuid, byte[] bytes) {
+        synchronized (entries) {
+            putLocked(uuid, bytes);
+        }
+    }
+
+    private void putLocked(String uuid, byte[] bytes) {
+        if (bytes.length > maxEntryBytes) {
+            return;
+        }
+        byte[] previous = entries.put(uuid, bytes);
+        if (previous != null) {
+            currentBytes -= previous.length;
+        }
+        currentBytes += bytes.length;
+        Iterator<Map.Entry<String, byte[]>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, byte[]> eldest = iterator.next();
+            currentBytes -= eldest.getValue().length;
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    // Call after the receipt is gone from the store
+    public void evict(String uuid) {
+        synchronized (entries) {
+            byte[] previous = entries.remove(uuid);
+            if (previous != null) {
+                currentBytes -= previous.length;
+            }
+            Load load = loads.get(uuid);
+            if (load != null) {
+                load.evicted = true;
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> map = new HashMap<>();
+        synchronized (entries) {
+            map.put("entries", entries.size());
+            map.put("bytes", currentBytes);
+        }
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        map.put("maxBytes", maxBytes);
+        map.put("hits", hitCount);
+        map.put("misses", missCount);
+        map.put("diskReads", diskReads.sum());
+        map.put("evictions", evictions.sum());
+        map.put("hitRate", hitCount + missCount == 0 ? 0 : (double) hitCount / (hitCount + missCount));
+        return map;
+    }
+}
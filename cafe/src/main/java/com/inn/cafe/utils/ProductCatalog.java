@@ -0,0 +1,250 @@
+package com.inn.cafe.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inn.cafe.POJO.Category;
+import com.inn.cafe.dao.CategoryDao;
+import com.inn.cafe.dao.ProductDao;
+import com.inn.cafe.wrapper.ProductWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The product menu in memory for /product/get, /product/getByCategory, /product/getById and /category/get.
+// The menu changes a few times a day and is read on every order screen, so it is loaded once into an
+// immutable snapshot and reloaded after every product or category write. Readers just read the volatile
+// reference, they never lock or touch the database once the first snapshot is loaded. A reload builds
+// the new snapshot while readers keep the old one.
+// The list endpoints are also kept as ready JSON (plain and gzipped), built on first use per snapshot, so
+// serving them is a buffer copy. A new snapshot starts with no encoded bodies.
+// Every write bumps the catalog version, which the list endpoints send as their ETag. A client that sends
+// the current version in If-None-Match gets a 304, checked against a counter without loading anything.
+// The version starts with the boot time, so a restart never reuses a version from before.
+// Writes made by other nodes or straight in the database do not go through refresh(), so the catalog is
+// also reloaded every cafe.catalog.reload-ms and replaced (with a new version) when it differs. Those
+// changes show up at most that late.
+// The objects in a snapshot are shared by every reader and must not be modified.
+@Slf4j
+@Component
+public class ProductCatalog {
+
+    private static final byte[] EMPTY_LIST_JSON = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private record Snapshot(long generation, List<ProductWrapper> all, Map<Integer, ProductWrapper> byId,
+                            Map<Integer, List<ProductWrapper>> activeByCategory,
+                            List<Category> categories, List<Category> activeCategories,
+                            Map<String, EncodedJson> encoded) {
+    }
+
+    @Autowired
+    ProductDao productDao;
+
+    @Autowired
+    CategoryDao categoryDao;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private volatile Snapshot snapshot;
+    // Set when reloading after a write failed, so the next read tries again
+    private volatile boolean stale;
+    // Bumped by every write, before the reload that picks it up
+    private final AtomicLong generation = new AtomicLong();
+    private final String bootEpoch = Long.toString(System.currentTimeMillis(), 36);
+
+    // Every product with its category, like Product.getAllProduct
+    public List<ProductWrapper> getAll() {
+        return get().all();
+    }
+
+    // id and name of the active products of a category, like Product.getProductByCategory
+    public List<ProductWrapper> getActiveByCategory(Integer categoryId) {
+        return get().activeByCategory().getOrDefault(categoryId, List.of());
+    }
+
+    // id, name, description and price of a product, null when there is none
+    public ProductWrapper getById(Integer id) {
+        return get().byId().get(id);
+    }
+
+    // Every category, or with activeOnly those that have an active product, like Category.getAllCategory
+    public List<Category> getCategories(boolean activeOnly) {
+        Snapshot current = get();
+        return activeOnly ? current.activeCategories() : current.categories();
+    }
+
+    public EncodedJson getAllJson() {
+        Snapshot current = get();
+        return encode(current, "all", current.all());
+    }
+
+    public EncodedJson getActiveByCategoryJson(Integer categoryId) {
+        Snapshot current = get();
+        List<ProductWrapper> products = current.activeByCategory().get(categoryId);
+        if (products == null) {
+            // Unknown ids are not cached, so they cannot grow the cache
+            return EncodedJson.of(EMPTY_LIST_JSON, getETag(current.generation()));
+        }
+        return encode(current, "category:" + categoryId, products);
+    }
+
+    public EncodedJson getCategoriesJson(boolean activeOnly) {
+        Snapshot current = get();
+        return activeOnly ? encode(current, "categories:active", current.activeCategories())
+                : encode(current, "categories", current.categories());
+    }
+
+    // The ETag of the current catalog version. Never touches the database.
+    public String getETag() {
+        return getETag(generation.get());
+    }
+
+    private String getETag(long version) {
+        return "W/" + getOpaqueTag(version);
+    }
+
+    private String getOpaqueTag(long version) {
+        return "\"" + bootEpoch + "-" + version + "\"";
+    }
+
+    // True when ifNoneMatch (the request's If-None-Match header) names the current version
+    public boolean isNotModified(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String current = getOpaqueTag(generation.get());
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+            // Weak comparison, the W/ prefix does not matter
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || current.equals(trimmed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private EncodedJson encode(Snapshot current, String key, Object value) {
+        return current.encoded().computeIfAbsent(key, k -> {
+            try {
+                // Labelled with the version it was loaded at, so it is never newer than the data
+                return EncodedJson.of(objectMapper.writeValueAsBytes(value), getETag(current.generation()));
+            } catch (JsonProcessingException ex) {
+                throw new IllegalStateException("Could not serialise " + key, ex);
+            }
+        });
+    }
+
+    // Call after a product or category write has committed. The new snapshot is built off to the side while
+    // readers keep getting the old one, then published with a single volatile write.
+    public void refresh() {
+        long writeGeneration = generation.incrementAndGet();
+        try {
+            reload(writeGeneration);
+        } catch (Exception ex) {
+            // Readers keep the old menu, the next read tries again
+            stale = true;
+            log.error("Reloading the product catalog failed", ex);
+        }
+    }
+
+    // Picks up changes that did not go through refresh(). An unchanged menu keeps its snapshot, version and
+    // encoded bodies, so clients keep getting 304s.
+    @Scheduled(initialDelayString = "${cafe.catalog.reload-ms:60000}", fixedDelayString = "${cafe.catalog.reload-ms:60000}")
+    public void reloadIfChanged() {
+        try {
+            checkForChanges();
+        } catch (Exception ex) {
+            log.error("Checking the product catalog for changes failed", ex);
+        }
+    }
+
+    private synchronized void checkForChanges() {
+        Snapshot current = snapshot;
+        if (current == null || stale) {
+            // Nothing loaded yet, or the next read reloads anyway
+            return;
+        }
+        long loadGeneration = generation.get();
+        Snapshot loaded = load(loadGeneration);
+        if (loaded.all().equals(current.all()) && loaded.categories().equals(current.categories())) {
+            return;
+        }
+        // A write that bumped the generation meanwhile reloads by itself once we let go of the lock
+        if (generation.compareAndSet(loadGeneration, loadGeneration + 1)) {
+            log.info("Product catalog changed outside this node, reloaded");
+            snapshot = new Snapshot(loadGeneration + 1, loaded.all(), loaded.byId(), loaded.activeByCategory(),
+                    loaded.categories(), loaded.activeCategories(), loaded.encoded());
+        }
+    }
+
+    private Snapshot get() {
+        Snapshot current = snapshot;
+        if (current != null && !stale) {
+            return current;
+        }
+        if (current != null) {
+            try {
+                reload(generation.get());
+            } catch (Exception ex) {
+                log.error("Reloading the product catalog failed, serving the previous one", ex);
+            }
+            return snapshot;
+        }
+        // Only before the first load
+        return reload(generation.get());
+    }
+
+    // Loads are serialised, so a snapshot is only ever replaced by a newer one
+    private synchronized Snapshot reload(long minGeneration) {
+        Snapshot current = snapshot;
+        if (current != null && current.generation() >= minGeneration && !stale) {
+            // A concurrent refresh already loaded past this write
+            return current;
+        }
+        Snapshot loaded = load(generation.get());
+        snapshot = loaded;
+        stale = false;
+        log.info("Loaded {} products and {} categories into the catalog", loaded.all().size(), loaded.categories().size());
+        return loaded;
+    }
+
+    // Everything committed before generation reached this value is in the snapshot
+    private Snapshot load(long loadGeneration) {
+        List<ProductWrapper> all = productDao.getAllProduct();
+        Map<Integer, ProductWrapper> byId = new HashMap<>();
+        Map<Integer, List<ProductWrapper>> activeByCategory = new HashMap<>();
+        for (ProductWrapper product : all) {
+            byId.put(product.getId(), new ProductWrapper(product.getId(), product.getName(),
+                    product.getDescription(), product.getPrice()));
+            if ("true".equalsIgnoreCase(product.getStatus())) {
+                activeByCategory.computeIfAbsent(product.getCategoryId(), id -> new ArrayList<>())
+                        .add(new ProductWrapper(product.getId(), product.getName()));
+            }
+        }
+        activeByCategory.replaceAll((id, products) -> Collections.unmodifiableList(products));
+        List<Category> categories = categoryDao.findAll();
+        List<Category> activeCategories = new ArrayList<>();
+        for (Category category : categories) {
+            if (activeByCategory.containsKey(category.getId())) {
+                activeCategories.add(category);
+            }
+        }
+        return new Snapshot(loadGeneration, Collections.unmodifiableList(new ArrayList<>(all)),
+                Collections.unmodifiableMap(byId), Collections.unmodifiableMap(activeByCategory),
+                Collections.unmodifiableList(new ArrayList<>(categories)), Collections.unmodifiableList(activeCategories),
+                new ConcurrentHashMap<>());
+    }
+}
@@ -0,0 +1,129 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.dao.BillDao;
+import com.inn.cafe.dao.ReceiptStore;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+// Renders the receipt of a saved bill into the receipt store from the data in the database,
+// for receipts that went missing or were never written.
+// Concurrent calls for the same uuid share a single render: the first caller does the work
+// and everyone else waits on its future. With rebuildTo the first caller keeps a copy of what it rendered
+// and sends that, instead of reading it back from the store. The copy is only sent after the receipt is
+// stored and the future completed, so a slow client never holds up the store or the waiting callers.
+@Slf4j
+@Component
+public class ReceiptRebuilder {
+
+    @Autowired
+    BillDao billDao;
+
+    @Autowired
+    ReceiptStore receiptStore;
+
+    @Autowired
+    ReceiptTemplate receiptTemplate;
+
+    @Autowired
+    ReceiptRenderPool receiptRenderPool;
+
+    // Receipts currently being rebuilt, by uuid
+    private final Map<String, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    // Returns false when there is no bill with this uuid or it could not be rendered
+    public boolean rebuild(String uuid) {
+        return rebuild(uuid, () -> billDao.findByUuid(uuid), null);
+    }
+
+    // Same as rebuild(uuid) for callers that have loaded the bill already
+    public boolean rebuild(Bill bill) {
+        return rebuild(bill.getUuid(), () -> Optional.of(bill), null);
+    }
+
+    // Rebuilds the receipt and writes it to clientStream. Callers that find a render running wait for it
+    // and get the stored copy. Returns false when nothing was written to clientStream.
+    public boolean rebuildTo(Bill bill, OutputStream clientStream) throws IOException {
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream(16 * 1024);
+        if (!rebuild(bill.getUuid(), () -> Optional.of(bill), rendered)) {
+            return false;
+        }
+        if (rendered.size() > 0) {
+            rendered.writeTo(clientStream);
+            return true;
+        }
+        try (InputStream inputStream = receiptStore.openStream(bill.getUuid())) {
+            if (inputStream == null) {
+                return false;
+            }
+            inputStream.transferTo(clientStream);
+        }
+        return true;
+    }
+
+    // copy, when not null, gets the rendered pdf as well as the store
+    private boolean rebuild(String uuid, Supplier<Optional<Bill>> billLoader, ByteArrayOutputStream copy) {
+        CompletableFuture<Boolean> rebuild = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = inFlight.putIfAbsent(uuid, rebuild);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            // Another rebuild may have finished between the caller's check and this one
+            if (receiptStore.exists(uuid)) {
+                rebuild.complete(true);
+                return true;
+            }
+            Optional<Bill> bill = billLoader.get();
+            if (bill.isEmpty()) {
+                rebuild.complete(false);
+                return false;
+            }
+            Map<String, Object> requestMap = getRequestMapFromBill(bill.get());
+            List<BillItemWrapper> items = CafeUtils.getBillItemsFromString(bill.get().getProductDetails());
+            if (copy == null) {
+                receiptStore.write(uuid, outputStream -> receiptTemplate.render(requestMap, items, outputStream));
+            } else {
+                receiptTemplate.render(requestMap, items, copy);
+                receiptStore.write(uuid, copy::writeTo);
+            }
+            // An earlier render in the pool may have failed, the receipt exists now
+            receiptRenderPool.clearFailure(uuid);
+            rebuild.complete(true);
+            return true;
+        } catch (Exception ex) {
+            log.warn("Could not rebuild receipt {}", uuid, ex);
+            rebuild.complete(false);
+            return false;
+        } finally {
+            inFlight.remove(uuid, rebuild);
+        }
+    }
+
+    // The request map generateReport would have been called with for this bill
+    private Map<String, Object> getRequestMapFromBill(Bill bill) {
+        Map<String, Object> requestMap = new HashMap<>();
+        requestMap.put("uuid", bill.getUuid());
+        requestMap.put("name", bill.getName());
+        requestMap.put("email", bill.getEmail());
+        requestMap.put("contactNumber", bill.getContactNumber());
+        requestMap.put("paymentMethod", bill.getPaymentMethod());
+        requestMap.put("totalAmount", String.valueOf(bill.getTotal()));
+        requestMap.put("productDetails", bill.getProductDetails());
+        return requestMap;
+    }
+}
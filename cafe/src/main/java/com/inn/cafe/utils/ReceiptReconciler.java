@@ -0,0 +1,206 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.dao.BillDao;
+import com.inn.cafe.dao.ReceiptStore;
+import com.inn.cafe.wrapper.BillWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps the receipt store and the bill table in step.
+// A pass first walks the store in chunks and looks the uuids up in the bill table (receipts without a bill
+// are orphans), then walks the bill table by id and checks the store (bills without a receipt are missing).
+// Only one chunk is handled per run and passes are spaced out, so it never competes with request traffic.
+// Something is only acted on when the previous pass found it too, which leaves a bill that is being
+// written or rendered right now alone.
+@Slf4j
+@Component
+public class ReceiptReconciler {
+
+    private enum Phase { IDLE, STORE, BILLS }
+
+    @Autowired
+    BillDao billDao;
+
+    @Autowired
+    ReceiptStore receiptStore;
+
+    @Autowired
+    PdfCache pdfCache;
+
+    @Autowired
+    ReceiptRenderPool receiptRenderPool;
+
+    @Autowired
+    ReceiptRebuilder receiptRebuilder;
+
+    @Value("${cafe.receipt.reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cafe.receipt.reconcile.chunk-size:500}")
+    private int chunkSize;
+
+    // Time between the end of a pass and the start of the next one
+    @Value("${cafe.receipt.reconcile.interval-ms:3600000}")
+    private long intervalMs;
+
+    @Value("${cafe.receipt.reconcile.delete-orphans:true}")
+    private boolean deleteOrphans;
+
+    // Missing receipts are only rendered when the render pool has nothing else to do
+    @Value("${cafe.receipt.reconcile.render-missing:false}")
+    private boolean renderMissing;
+
+    // Upper bound on the uuids remembered between passes
+    @Value("${cafe.receipt.reconcile.max-suspects:10000}")
+    private int maxSuspects;
+
+    private volatile Phase phase = Phase.IDLE;
+    private long nextPassAt;
+    private String storeCursor;
+    private int billCursor;
+
+    private Set<String> previousOrphans = new HashSet<>();
+    private Set<String> previousMissing = new HashSet<>();
+    private Set<String> orphans = new HashSet<>();
+    private Set<String> missing = new HashSet<>();
+
+    private long passStartedAt;
+    private long receiptsScanned;
+    private long billsScanned;
+    private long orphansDeleted;
+    private long missingQueued;
+
+    private volatile Map<String, Object> lastReport = Map.of();
+
+    @Scheduled(initialDelayString = "${cafe.receipt.reconcile.initial-delay-ms:60000}",
+            fixedDelayString = "${cafe.receipt.reconcile.delay-ms:1000}")
+    public void reconcileChunk() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (phase == Phase.IDLE) {
+                if (System.currentTimeMillis() < nextPassAt) {
+                    return;
+                }
+                startPass();
+            }
+            if (phase == Phase.STORE) {
+                reconcileReceipts();
+            } else {
+                reconcileBills();
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void startPass() {
+        phase = Phase.STORE;
+        storeCursor = null;
+        billCursor = 0;
+        passStartedAt = System.currentTimeMillis();
+        receiptsScanned = 0;
+        billsScanned = 0;
+        orphansDeleted = 0;
+        missingQueued = 0;
+    }
+
+    private void reconcileReceipts() throws Exception {
+        ReceiptStore.ReceiptPage page = receiptStore.list(storeCursor, chunkSize);
+        if (!page.uuids().isEmpty()) {
+            Set<String> existing = new HashSet<>(billDao.getExistingUuids(page.uuids()));
+            for (String uuid : page.uuids()) {
+                if (existing.contains(uuid)) {
+                    continue;
+                }
+                if (deleteOrphans && previousOrphans.contains(uuid)) {
+                    // Store before cache, see BillServiceImpl.deleteBill
+                    if (receiptStore.delete(uuid)) {
+                        orphansDeleted++;
+                    }
+                    pdfCache.evict(uuid);
+                } else if (orphans.size() < maxSuspects) {
+                    orphans.add(uuid);
+                }
+            }
+            receiptsScanned += page.uuids().size();
+        }
+        storeCursor = page.nextCursor();
+        if (storeCursor == null) {
+            phase = Phase.BILLS;
+        }
+    }
+
+    private void reconcileBills() {
+        List<BillWrapper> bills = billDao.getBillsAfter(billCursor, PageRequest.of(0, chunkSize));
+        if (bills.isEmpty()) {
+            finishPass();
+            return;
+        }
+        for (BillWrapper bill : bills) {
+            String uuid = bill.getUuid();
+            // Bills the render pool is still working on are not missing. Failed renders are, they are tried again.
+            // Uuids the store cannot hold have no receipt to reconcile
+            if (!ReceiptStore.isValidUuid(uuid) || receiptStore.exists(uuid) || receiptRenderPool.isPending(uuid)) {
+                continue;
+            }
+            if (renderMissing && previousMissing.contains(uuid) && receiptRenderPool.isIdle()) {
+                if (receiptRenderPool.submit(uuid, () -> {
+                    if (!receiptRebuilder.rebuild(uuid)) {
+                        throw new IllegalStateException("Could not rebuild receipt " + uuid);
+                    }
+                })) {
+                    missingQueued++;
+                    continue;
+                }
+            }
+            if (missing.size() < maxSuspects) {
+                missing.add(uuid);
+            }
+        }
+        billsScanned += bills.size();
+        billCursor = bills.get(bills.size() - 1).getId();
+    }
+
+    private void finishPass() {
+        long finishedAt = System.currentTimeMillis();
+        Map<String, Object> report = new HashMap<>();
+        report.put("startedAt", passStartedAt);
+        report.put("finishedAt", finishedAt);
+        report.put("durationMs", finishedAt - passStartedAt);
+        report.put("receiptsScanned", receiptsScanned);
+        report.put("billsScanned", billsScanned);
+        report.put("orphanedReceipts", orphans.size());
+        report.put("orphansDeleted", orphansDeleted);
+        report.put("missingReceipts", missing.size());
+        report.put("missingQueued", missingQueued);
+        lastReport = report;
+        log.info("Receipt reconciliation finished {}", report);
+
+        previousOrphans = orphans;
+        previousMissing = missing;
+        orphans = new HashSet<>();
+        missing = new HashSet<>();
+        phase = Phase.IDLE;
+        nextPassAt = finishedAt + intervalMs;
+    }
+
+    // The numbers of the last finished pass and where the current one is
+    public Map<String, Object> getReport() {
+        Map<String, Object> map = new HashMap<>(lastReport);
+        map.put("enabled", enabled);
+        map.put("phase", phase.name());
+        return map;
+    }
+}
@@ -0,0 +1,169 @@
+package com.inn.cafe.utils;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Dedicated, size bounded pool that renders receipts off the servlet threads.
+// Keeps the status of every job that is not finished yet and the numbers we need to size the pool.
+@Slf4j
+@Component
+public class ReceiptRenderPool {
+
+    public static final String QUEUED = "QUEUED";
+    public static final String RENDERING = "RENDERING";
+    public static final String READY = "READY";
+    public static final String FAILED = "FAILED";
+
+    // A render job. Allowed to throw so failures end up in the job status.
+    public interface RenderTask {
+        void render() throws Exception;
+    }
+
+    @Value("${cafe.render.pool-size:4}")
+    private int poolSize;
+
+    @Value("${cafe.render.queue-capacity:200}")
+    private int queueCapacity;
+
+    // How long a failed job is reported as FAILED before the pool forgets it
+    @Value("${cafe.render.failed-ttl-ms:3600000}")
+    private long failedTtlMillis;
+
+    private ThreadPoolExecutor executor;
+
+    // Only jobs that are queued, rendering or failed are kept here.
+    // Finished jobs are removed, their pdf on disk tells us they are ready.
+    // Failed jobs are removed after failedTtlMillis or when the receipt is rendered after all.
+    private final Map<String, String> statusMap = new ConcurrentHashMap<>();
+    private final Map<String, Long> failedAt = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalRenderNanos = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxRenderNanos = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "receipt-render-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        log.info("Receipt render pool started with {} threads and a queue of {}", poolSize, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    // Returns false when the queue is full. The caller decides what to do with the job then.
+    public boolean submit(String uuid, RenderTask task) {
+        long queuedAt = System.nanoTime();
+        failedAt.remove(uuid);
+        statusMap.put(uuid, QUEUED);
+        try {
+            executor.execute(() -> run(uuid, task, queuedAt));
+            submitted.increment();
+            return true;
+        } catch (RejectedExecutionException ex) {
+            statusMap.remove(uuid);
+            rejected.increment();
+            log.warn("Receipt render queue is full, rejected {}", uuid);
+            return false;
+        }
+    }
+
+    private void run(String uuid, RenderTask task, long queuedAt) {
+        long startedAt = System.nanoTime();
+        totalWaitNanos.add(startedAt - queuedAt);
+        statusMap.put(uuid, RENDERING);
+        try {
+            task.render();
+            statusMap.remove(uuid);
+            completed.increment();
+        } catch (Exception ex) {
+            log.error("Rendering receipt {} failed", uuid, ex);
+            failedAt.put(uuid, System.currentTimeMillis());
+            statusMap.put(uuid, FAILED);
+            failed.increment();
+        } finally {
+            long renderNanos = System.nanoTime() - startedAt;
+            totalRenderNanos.add(renderNanos);
+            maxRenderNanos.accumulateAndGet(renderNanos, Math::max);
+        }
+    }
+
+    // True when a job would start right away, background work uses this to stay out of the way of requests
+    public boolean isIdle() {
+        return executor.getQueue().isEmpty() && executor.getActiveCount() < poolSize;
+    }
+
+    // Returns null when the pool does not know the uuid, i.e. it was never queued or it has finished.
+    public String getStatus(String uuid) {
+        return statusMap.get(uuid);
+    }
+
+    // True while a job for the uuid is queued or rendering. A failed job is not pending, it may be retried.
+    public boolean isPending(String uuid) {
+        String status = statusMap.get(uuid);
+        return QUEUED.equals(status) || RENDERING.equals(status);
+    }
+
+    // Called when the receipt was rendered some other way, so it is no longer reported as failed
+    public void clearFailure(String uuid) {
+        if (failedAt.remove(uuid) != null) {
+            statusMap.remove(uuid, FAILED);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cafe.render.failed-purge-delay-ms:60000}")
+    public void purgeFailures() {
+        long expired = System.currentTimeMillis() - failedTtlMillis;
+        failedAt.forEach((uuid, at) -> {
+            if (at < expired) {
+                clearFailure(uuid);
+            }
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        long finished = completed.sum() + failed.sum();
+        Map<String, Object> map = new HashMap<>();
+        map.put("poolSize", poolSize);
+        map.put("activeThreads", executor.getActiveCount());
+        map.put("queueDepth", executor.getQueue().size());
+        map.put("queueCapacity", queueCapacity);
+        map.put("submitted", submitted.sum());
+        map.put("completed", completed.sum());
+        map.put("failed", failed.sum());
+        map.put("rejected", rejected.sum());
+        map.put("avgQueueWaitMs", finished == 0 ? 0 : totalWaitNanos.sum() / finished / 1_000_000.0);
+        map.put("avgRenderMs", finished == 0 ? 0 : totalRenderNanos.sum() / finished / 1_000_000.0);
+        map.put("maxRenderMs", maxRenderNanos.get() / 1_000_000.0);
+        return map;
+    }
+}
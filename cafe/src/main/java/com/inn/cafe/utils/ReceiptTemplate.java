@@ -0,0 +1,104 @@
+package com.inn.cafe.utils;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+// The static parts of a receipt, built once and shared by every render.
+// Fonts, header cells and the page border are only read while rendering, so one instance is safe to
+// use from many threads. Per bill we only build the customer details, the item rows and the total.
+@Component
+public class ReceiptTemplate {
+
+    private static final String[] COLUMN_TITLES = {"Name", "Category", "Quantity", "Price", "Sub Total"};
+
+    private final Font headerFont;
+    private final Font dataFont;
+    private final Rectangle border;
+    private final PdfPCell[] headerCells;
+
+    public ReceiptTemplate() {
+        headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLDOBLIQUE, 18, BaseColor.BLACK);
+        headerFont.setStyle(Font.BOLD);
+        dataFont = FontFactory.getFont(FontFactory.TIMES_ROMAN, 11, BaseColor.BLACK);
+        dataFont.setStyle(Font.BOLD);
+
+        border = new Rectangle(577, 825, 18, 15);
+        border.enableBorderSide(Rectangle.TOP);
+        border.enableBorderSide(Rectangle.BOTTOM);
+        border.enableBorderSide(Rectangle.LEFT);
+        border.enableBorderSide(Rectangle.RIGHT);
+        border.setBorderColor(BaseColor.BLACK);
+        border.setBorderWidth(1);
+
+        // PdfPTable.addCell copies the cell it is given, so these are never modified after this point
+        headerCells = new PdfPCell[COLUMN_TITLES.length];
+        for (int i = 0; i < COLUMN_TITLES.length; i++) {
+            PdfPCell header = new PdfPCell();
+            header.setBorderWidth(2);
+            header.setPhrase(new Phrase(COLUMN_TITLES[i]));
+            header.setBackgroundColor(BaseColor.YELLOW);
+            header.setHorizontalAlignment(Element.ALIGN_CENTER);
+            header.setVerticalAlignment(Element.ALIGN_CENTER);
+            headerCells[i] = header;
+        }
+    }
+
+    // Renders the bill in the request map to the given stream. The stream is left open for the caller.
+    public void render(Map<String, Object> requestMap, OutputStream outputStream) throws Exception {
+        render(requestMap, CafeUtils.getBillItemsFromString((String) requestMap.get("productDetails")), outputStream);
+    }
+
+    // Same as above for callers that have already parsed the line items
+    public void render(Map<String, Object> requestMap, List<BillItemWrapper> items, OutputStream outputStream) throws Exception {
+        String data = "Name: " + requestMap.get("name") + "\n" + "Contact Number: " + requestMap.get("contactNumber") +
+                "\n" + "Email: " + requestMap.get("email") + "\n" + "Payment Method: " + requestMap.get("paymentMethod");
+
+        Document document = new Document();
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        writer.setCloseStream(false);
+        document.open();
+        document.add(border);
+
+        Paragraph title = new Paragraph("Cafe Management System", headerFont);
+        title.setAlignment(Element.ALIGN_CENTER);
+        document.add(title);
+
+        document.add(new Paragraph(data + "\n \n ", dataFont));
+
+        PdfPTable table = new PdfPTable(COLUMN_TITLES.length);
+        for (PdfPCell header : headerCells) {
+            table.addCell(header);
+        }
+        for (BillItemWrapper item : items) {
+            addRow(table, item);
+        }
+        document.add(table);
+
+        document.add(new Paragraph("Total: " + requestMap.get("totalAmount") + "\n"
+                + "Thank you for visiting. Please visit again!!", dataFont));
+        document.close();
+    }
+
+    private void addRow(PdfPTable table, BillItemWrapper item) {
+        table.addCell(item.getName());
+        table.addCell(item.getCategory());
+        table.addCell(Integer.toString(item.getQuantity()));
+        table.addCell(Double.toString(item.getPrice()));
+        table.addCell(Double.toString(item.getTotal()));
+    }
+}
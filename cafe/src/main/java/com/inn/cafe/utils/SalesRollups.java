@@ -0,0 +1,325 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.POJO.BillItem;
+import com.inn.cafe.POJO.Category;
+import com.inn.cafe.POJO.Product;
+import com.inn.cafe.POJO.SalesRollup;
+import com.inn.cafe.dao.CategoryDao;
+import com.inn.cafe.dao.ProductDao;
+import com.inn.cafe.dao.SalesRollupJdbcDao;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Incremental sales aggregates behind /dashboard/sales.
+// Every saved bill adds its line items to in-memory deltas, keyed by hour, day and month bucket (server time),
+// category, product and payment method. The deltas are flushed to sales_rollup as upserts every few seconds.
+// Queries read the table and add the deltas that are not flushed yet, so they are always up to date.
+// A deleted bill is taken back out with negative deltas.
+@Slf4j
+@Component
+public class SalesRollups {
+
+    public static final String HOUR = "hour";
+    public static final String DAY = "day";
+    public static final String MONTH = "month";
+    public static final List<String> GRANULARITIES = List.of(HOUR, DAY, MONTH);
+
+    private record Key(String granularity, LocalDateTime bucket, int categoryId, int productId, String paymentMethod) {
+    }
+
+    private static class Delta {
+        final LongAdder quantity = new LongAdder();
+        final DoubleAdder revenue = new DoubleAdder();
+        // Failed flushes so far, only touched by flush()
+        int attempts;
+    }
+
+    @Autowired
+    SalesRollupJdbcDao salesRollupJdbcDao;
+
+    @Autowired
+    CategoryDao categoryDao;
+
+    @Autowired
+    ProductDao productDao;
+
+    // A delta that still cannot be written after this many flushes (10 minutes at the default delay) is dropped,
+    // so a long outage cannot grow pending without bound
+    @Value("${cafe.sales-rollup.max-flush-attempts:60}")
+    private int maxFlushAttempts;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    // record() holds the read lock while it adds to pending, flush() swaps pending under the write lock,
+    // so no delta is added to a map that is already being flushed
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    // Queries hold the read lock, flush() the write lock while it commits, so a query sees the flushed
+    // deltas either in the table or in memory, never in both
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+
+    private volatile Map<Key, Delta> pending = new ConcurrentHashMap<>();
+    private volatile Map<Key, Delta> flushing = Map.of();
+
+    // items must have their categoryId, i.e. be saved with BillJdbcDao.insertBillItems first
+    public void record(Bill bill, List<BillItemWrapper> items) {
+        add(bill, items, 1);
+    }
+
+    // Takes a deleted bill back out of its buckets, items are its bill_item rows
+    public void remove(Bill bill, List<BillItem> items) {
+        List<BillItemWrapper> lines = new ArrayList<>(items.size());
+        for (BillItem item : items) {
+            BillItemWrapper line = new BillItemWrapper();
+            line.setId(item.getProductId());
+            line.setCategoryId(item.getCategoryId());
+            line.setQuantity(item.getQuantity());
+            line.setPrice(item.getUnitPrice());
+            line.setTotal(item.getSubtotal());
+            lines.add(line);
+        }
+        add(bill, lines, -1);
+    }
+
+    private void add(Bill bill, List<BillItemWrapper> items, int sign) {
+        if (bill.getCreatedAt() == null) {
+            return;
+        }
+        LocalDateTime time = LocalDateTime.ofInstant(bill.getCreatedAt(), zone);
+        String paymentMethod = normalisePaymentMethod(bill.getPaymentMethod());
+        swapLock.readLock().lock();
+        try {
+            for (BillItemWrapper item : items) {
+                long quantity = item.getQuantity() == null ? 0 : item.getQuantity();
+                double revenue = item.getTotal() != null ? item.getTotal()
+                        : item.getPrice() == null ? 0 : item.getPrice() * quantity;
+                for (String granularity : GRANULARITIES) {
+                    Key key = new Key(granularity, bucketStart(granularity, time), orZero(item.getCategoryId()),
+                            orZero(item.getId()), paymentMethod);
+                    Delta delta = pending.computeIfAbsent(key, k -> new Delta());
+                    delta.quantity.add(sign * quantity);
+                    delta.revenue.add(sign * revenue);
+                }
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    public static LocalDateTime bucketStart(String granularity, LocalDateTime time) {
+        switch (granularity) {
+            case HOUR:
+                return time.truncatedTo(ChronoUnit.HOURS);
+            case DAY:
+                return time.truncatedTo(ChronoUnit.DAYS);
+            case MONTH:
+                return time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+            default:
+                throw new IllegalArgumentException("Unknown granularity " + granularity);
+        }
+    }
+
+    // Payment methods are free text on the bill, the rollup column is not
+    static String normalisePaymentMethod(String paymentMethod) {
+        if (paymentMethod == null) {
+            return "";
+        }
+        String trimmed = paymentMethod.trim();
+        return trimmed.length() > SalesRollup.PAYMENT_METHOD_LENGTH
+                ? trimmed.substring(0, SalesRollup.PAYMENT_METHOD_LENGTH) : trimmed;
+    }
+
+    private static int orZero(Integer id) {
+        return id == null ? 0 : id;
+    }
+
+    @Scheduled(fixedDelayString = "${cafe.sales-rollup.flush-delay-ms:10000}")
+    public void flush() {
+        Map<Key, Delta> batch;
+        swapLock.writeLock().lock();
+        try {
+            batch = pending;
+            if (batch.isEmpty()) {
+                return;
+            }
+            flushing = batch;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        flushLock.writeLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            batch.forEach((key, delta) -> rows.add(toRow(key, delta)));
+            salesRollupJdbcDao.upsert(rows);
+        } catch (Exception ex) {
+            // The batch was rolled back. Retry row by row so one bad row cannot hold back all the others.
+            log.error("Flushing {} sales rollups failed, retrying them one by one", batch.size(), ex);
+            requeue(flushOneByOne(batch));
+        } finally {
+            flushing = Map.of();
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private static Object[] toRow(Key key, Delta delta) {
+        return new Object[]{key.granularity(), Timestamp.valueOf(key.bucket()), key.categoryId(), key.productId(),
+                key.paymentMethod(), delta.quantity.sum(), delta.revenue.sum()};
+    }
+
+    // Returns the deltas to try again. Rows the table rejects are dropped, they would fail forever.
+    // After any other failure the database is most likely down, so the remaining rows are not tried.
+    private Map<Key, Delta> flushOneByOne(Map<Key, Delta> batch) {
+        Map<Key, Delta> retry = new HashMap<>();
+        boolean unavailable = false;
+        for (Map.Entry<Key, Delta> entry : batch.entrySet()) {
+            if (unavailable) {
+                retry.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+            try {
+                salesRollupJdbcDao.upsert(List.<Object[]>of(toRow(entry.getKey(), entry.getValue())));
+            } catch (DataIntegrityViolationException ex) {
+                log.error("Dropping sales rollup {} rejected by the table: {}", entry.getKey(), ex.getMessage());
+            } catch (Exception ex) {
+                unavailable = true;
+                retry.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return retry;
+    }
+
+    private void requeue(Map<Key, Delta> retry) {
+        swapLock.readLock().lock();
+        try {
+            retry.forEach((key, delta) -> {
+                if (delta.attempts + 1 >= maxFlushAttempts) {
+                    log.error("Dropping sales rollup {} after {} failed flushes", key, delta.attempts + 1);
+                    return;
+                }
+                Delta target = pending.computeIfAbsent(key, k -> new Delta());
+                target.quantity.add(delta.quantity.sum());
+                target.revenue.add(delta.revenue.sum());
+                target.attempts = Math.max(target.attempts, delta.attempts + 1);
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    // Quantity and revenue per bucket in [from, to), split by groupBy (category, product, paymentMethod or null).
+    // Buckets are in ascending order, groups within a bucket by revenue, highest first.
+    public List<Map<String, Object>> query(String granularity, LocalDateTime from, LocalDateTime to, String groupBy) {
+        // bucket -> group value -> {quantity, revenue}
+        TreeMap<LocalDateTime, Map<Object, double[]>> totals = new TreeMap<>();
+        flushLock.readLock().lock();
+        try {
+            for (Object[] row : salesRollupJdbcDao.query(granularity, from, to, groupBy)) {
+                add(totals, (LocalDateTime) row[0], row[1], ((Number) row[2]).longValue(), ((Number) row[3]).doubleValue());
+            }
+            List<Map<Key, Delta>> inMemory;
+            swapLock.readLock().lock();
+            try {
+                inMemory = List.of(pending, flushing);
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            for (Map<Key, Delta> deltas : inMemory) {
+                deltas.forEach((key, delta) -> {
+                    if (key.granularity().equals(granularity) && !key.bucket().isBefore(from) && key.bucket().isBefore(to)) {
+                        add(totals, key.bucket(), groupValue(key, groupBy), delta.quantity.sum(), delta.revenue.sum());
+                    }
+                });
+            }
+        } finally {
+            flushLock.readLock().unlock();
+        }
+
+        Map<Integer, String> names = getNames(totals.values(), groupBy);
+        List<Map<String, Object>> result = new ArrayList<>();
+        totals.forEach((bucket, groups) -> {
+            List<Map.Entry<Object, double[]>> entries = new ArrayList<>(groups.entrySet());
+            entries.sort(Comparator.comparingDouble((Map.Entry<Object, double[]> entry) -> entry.getValue()[1]).reversed());
+            for (Map.Entry<Object, double[]> entry : entries) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("bucket", bucket.toString());
+                if (groupBy != null) {
+                    map.put(groupBy, entry.getKey());
+                    if (names != null) {
+                        map.put("name", names.get(entry.getKey()));
+                    }
+                }
+                map.put("quantity", (long) entry.getValue()[0]);
+                map.put("revenue", entry.getValue()[1]);
+                result.add(map);
+            }
+        });
+        return result;
+    }
+
+    private static void add(TreeMap<LocalDateTime, Map<Object, double[]>> totals, LocalDateTime bucket, Object group,
+                            long quantity, double revenue) {
+        double[] total = totals.computeIfAbsent(bucket, b -> new HashMap<>()).computeIfAbsent(group, g -> new double[2]);
+        total[0] += quantity;
+        total[1] += revenue;
+    }
+
+    private static Object groupValue(Key key, String groupBy) {
+        if (groupBy == null) {
+            return null;
+        }
+        switch (groupBy) {
+            case "category":
+                return key.categoryId();
+            case "product":
+                return key.productId();
+            default:
+                return key.paymentMethod();
+        }
+    }
+
+    // Names of the categories or products in the result, null when not grouped by either
+    private Map<Integer, String> getNames(Collection<Map<Object, double[]>> groups, String groupBy) {
+        if (!"category".equals(groupBy) && !"product".equals(groupBy)) {
+            return null;
+        }
+        Set<Integer> ids = new HashSet<>();
+        groups.forEach(group -> group.keySet().forEach(id -> ids.add((Integer) id)));
+        Map<Integer, String> names = new HashMap<>();
+        if ("category".equals(groupBy)) {
+            for (Category category : categoryDao.findAllById(ids)) {
+                names.put(category.getId(), category.getName());
+            }
+        } else {
+            for (Product product : productDao.findAllById(ids)) {
+                names.put(product.getId(), product.getName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,148 @@
+package com.inn.cafe.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Space-Saving heavy hitters sketch (Metwally et al.) with weighted updates.
+// Tracks at most capacity keys. When a new key arrives and the sketch is full, the key with the smallest
+// count is replaced and the new key inherits that count as its error. For every tracked key
+//   count - error <= true count <= count
+// and error <= total weight / capacity, so any key heavier than that is guaranteed to be tracked.
+// Not thread safe, callers synchronise.
+public class SpaceSaving<K> {
+
+    public static final class Counter<K> {
+        private final K key;
+        private long count;
+        private long error;
+        // Tie breaker so the ordered set can hold equal counts
+        private final long sequence;
+
+        private Counter(K key, long count, long error, long sequence) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        // Upper bound of the true count
+        public long getCount() {
+            return count;
+        }
+
+        // count - error is a lower bound of the true count
+        public long getError() {
+            return error;
+        }
+    }
+
+    private static final Comparator<Counter<?>> BY_COUNT =
+            Comparator.<Counter<?>>comparingLong(counter -> counter.count).thenComparingLong(counter -> counter.sequence);
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    // Same counters ordered by count, the first one is replaced when a new key arrives
+    private final TreeSet<Counter<K>> ordered = new TreeSet<>(BY_COUNT);
+    private long total;
+    private long sequence;
+    // After a merge: the most a key that none of the merged sketches tracked can have
+    private long untrackedBound;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void offer(K key, long weight) {
+        if (weight <= 0) {
+            return;
+        }
+        total += weight;
+        Counter<K> counter = counters.get(key);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter.count += weight;
+            ordered.add(counter);
+        } else if (counters.size() < capacity) {
+            add(key, weight, 0);
+        } else {
+            Counter<K> smallest = ordered.pollFirst();
+            counters.remove(smallest.key);
+            add(key, smallest.count + weight, smallest.count);
+        }
+    }
+
+    private void add(K key, long count, long error) {
+        Counter<K> counter = new Counter<>(key, count, error, sequence++);
+        counters.put(key, counter);
+        ordered.add(counter);
+    }
+
+    // Sum of every weight offered
+    public long getTotal() {
+        return total;
+    }
+
+    // Largest possible overestimate of a tracked key, and of the true count of a key that is not tracked
+    public long getMaxError() {
+        return Math.max(untrackedBound, counters.size() < capacity ? 0 : ordered.first().count);
+    }
+
+    // The k keys with the highest counts, highest first
+    public List<Counter<K>> top(int k) {
+        List<Counter<K>> top = new ArrayList<>(Math.min(k, counters.size()));
+        for (Counter<K> counter : ordered.descendingSet()) {
+            if (top.size() == k) {
+                break;
+            }
+            top.add(counter);
+        }
+        return top;
+    }
+
+    // Combines sketches of disjoint parts of a stream, e.g. the slots of a sliding window.
+    // A key missing from a full sketch may have had up to that sketch's smallest count there, so that much
+    // is added to both its count and its error. The result keeps the capacity largest counts.
+    public static <K> SpaceSaving<K> merge(List<SpaceSaving<K>> sketches, int capacity) {
+        Map<K, long[]> merged = new HashMap<>();
+        long total = 0;
+        long untrackedBound = 0;
+        for (SpaceSaving<K> sketch : sketches) {
+            total += sketch.total;
+            for (Counter<K> counter : sketch.counters.values()) {
+                long[] value = merged.computeIfAbsent(counter.key, key -> new long[2]);
+                value[0] += counter.count;
+                value[1] += counter.error;
+            }
+        }
+        for (SpaceSaving<K> sketch : sketches) {
+            long missing = sketch.getMaxError();
+            untrackedBound += missing;
+            if (missing == 0) {
+                continue;
+            }
+            merged.forEach((key, value) -> {
+                if (!sketch.counters.containsKey(key)) {
+                    value[0] += missing;
+                    value[1] += missing;
+                }
+            });
+        }
+        List<Map.Entry<K, long[]>> entries = new ArrayList<>(merged.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<K, long[]> entry) -> entry.getValue()[0]).reversed());
+        SpaceSaving<K> result = new SpaceSaving<>(capacity);
+        for (int i = 0; i < entries.size() && i < capacity; i++) {
+            result.add(entries.get(i).getKey(), entries.get(i).getValue()[0], entries.get(i).getValue()[1]);
+        }
+        result.total = total;
+        result.untrackedBound = untrackedBound;
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Category;
+import com.inn.cafe.POJO.Product;
+import com.inn.cafe.dao.CategoryDao;
+import com.inn.cafe.dao.ProductDao;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// Approximate best selling products and categories by quantity, for the last hour and for today.
+// Every saved line item is offered to Space-Saving sketches, so memory is fixed by the sketch capacity
+// no matter how many bills come in. The last hour is a ring of 5 minute sketches merged on read,
+// so it slides in 5 minute steps. Today is one sketch that starts over at midnight (server time).
+@Component
+public class TopSellers {
+
+    public static final String HOUR = "hour";
+    public static final String TODAY = "today";
+    public static final String PRODUCT = "product";
+    public static final String CATEGORY = "category";
+
+    private static final long SLOT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final int SLOTS = 12;
+
+    private static class Sketches {
+        long start = -1;
+        SpaceSaving<Integer> products;
+        SpaceSaving<Integer> categories;
+
+        void reset(long start, int capacity) {
+            this.start = start;
+            products = new SpaceSaving<>(capacity);
+            categories = new SpaceSaving<>(capacity);
+        }
+
+        SpaceSaving<Integer> get(String dimension) {
+            return CATEGORY.equals(dimension) ? categories : products;
+        }
+    }
+
+    @Autowired
+    ProductDao productDao;
+
+    @Autowired
+    CategoryDao categoryDao;
+
+    private final int capacity;
+    private final LongSupplier clock;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Sketches[] hour = new Sketches[SLOTS];
+    private final Sketches today = new Sketches();
+    private LocalDate todayDate;
+
+    @Autowired
+    public TopSellers(@Value("${cafe.top-sellers.capacity:200}") int capacity) {
+        this(capacity, System::currentTimeMillis);
+    }
+
+    TopSellers(int capacity, LongSupplier clock) {
+        this.capacity = capacity;
+        this.clock = clock;
+        for (int i = 0; i < SLOTS; i++) {
+            hour[i] = new Sketches();
+        }
+    }
+
+    // items must have their categoryId, i.e. be saved with BillJdbcDao.insertBillItems first
+    public synchronized void record(List<BillItemWrapper> items) {
+        long now = clock.getAsLong();
+        Sketches slot = currentSlot(now);
+        Sketches day = currentDay(now);
+        for (BillItemWrapper item : items) {
+            long quantity = item.getQuantity() == null ? 0 : item.getQuantity();
+            if (item.getId() != null) {
+                slot.products.offer(item.getId(), quantity);
+                day.products.offer(item.getId(), quantity);
+            }
+            if (item.getCategoryId() != null) {
+                slot.categories.offer(item.getCategoryId(), quantity);
+                day.categories.offer(item.getCategoryId(), quantity);
+            }
+        }
+    }
+
+    private Sketches currentSlot(long now) {
+        long start = now - now % SLOT_MILLIS;
+        Sketches slot = hour[(int) ((start / SLOT_MILLIS) % SLOTS)];
+        if (slot.start != start) {
+            slot.reset(start, capacity);
+        }
+        return slot;
+    }
+
+    private Sketches currentDay(long now) {
+        LocalDate date = Instant.ofEpochMilli(now).atZone(zone).toLocalDate();
+        if (!date.equals(todayDate)) {
+            todayDate = date;
+            today.reset(now, capacity);
+        }
+        return today;
+    }
+
+    // The sketch for the window, merged from the slots for the last hour
+    synchronized SpaceSaving<Integer> sketch(String window, String dimension) {
+        long now = clock.getAsLong();
+        if (TODAY.equals(window)) {
+            return currentDay(now).get(dimension);
+        }
+        long oldest = now - now % SLOT_MILLIS - (SLOTS - 1) * SLOT_MILLIS;
+        List<SpaceSaving<Integer>> slots = new ArrayList<>();
+        for (Sketches slot : hour) {
+            if (slot.start >= oldest) {
+                slots.add(slot.get(dimension));
+            }
+        }
+        return SpaceSaving.merge(slots, capacity);
+    }
+
+    // The limit best sellers of the window. quantity is an upper bound of what was sold, minQuantity a lower bound.
+    // maxError is how far off any quantity can be, and also the most an item that is not listed can have sold.
+    public Map<String, Object> top(String window, String dimension, int limit) {
+        // Today's sketch keeps changing, so everything is copied out while holding the lock
+        List<Map<String, Object>> items = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        long total;
+        long maxError;
+        synchronized (this) {
+            SpaceSaving<Integer> sketch = sketch(window, dimension);
+            for (SpaceSaving.Counter<Integer> counter : sketch.top(limit)) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", counter.getKey());
+                item.put("quantity", counter.getCount());
+                item.put("minQuantity", counter.getCount() - counter.getError());
+                items.add(item);
+                ids.add(counter.getKey());
+            }
+            total = sketch.getTotal();
+            maxError = sketch.getMaxError();
+        }
+        Map<Integer, String> names = getNames(ids, dimension);
+        items.forEach(item -> item.put("name", names.get(item.get("id"))));
+        Map<String, Object> map = new HashMap<>();
+        map.put("window", window);
+        map.put(dimension.equals(CATEGORY) ? "categories" : "products", items);
+        map.put("totalQuantity", total);
+        map.put("maxError", maxError);
+        return map;
+    }
+
+    private Map<Integer, String> getNames(List<Integer> ids, String dimension) {
+        Map<Integer, String> names = new HashMap<>();
+        if (ids.isEmpty()) {
+            return names;
+        }
+        if (CATEGORY.equals(dimension)) {
+            for (Category category : categoryDao.findAllById(ids)) {
+                names.put(category.getId(), category.getName());
+            }
+        } else {
+            for (Product product : productDao.findAllById(ids)) {
+                names.put(product.getId(), product.getName());
+            }
+        }
+        return names;
+    }
+}
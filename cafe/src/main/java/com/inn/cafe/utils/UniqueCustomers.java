@@ -0,0 +1,145 @@
+package com.inn.cafe.utils;
+
+import com.google.common.hash.Hashing;
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.dao.CustomerSketchJdbcDao;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Approximate number of distinct customers over any range of days, without count(distinct) over bill.
+// Every saved bill adds its customer to the HyperLogLog of its day. Recent days are kept in memory and
+// merged into customer_sketch every few seconds. A range is answered by merging the sketches of its days.
+// A customer is their email, or their contact number when the bill has no email.
+// Precision is cafe.hll.precision: 2^precision bytes per day, standard error 1.04 / sqrt(2^precision).
+@Slf4j
+@Component
+public class UniqueCustomers {
+
+    private static class DaySketch {
+        final HyperLogLog sketch;
+        boolean dirty;
+
+        DaySketch(int precision) {
+            sketch = new HyperLogLog(precision);
+        }
+    }
+
+    @Autowired
+    CustomerSketchJdbcDao customerSketchJdbcDao;
+
+    @Value("${cafe.hll.precision:12}")
+    private int precision;
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final Map<LocalDate, DaySketch> recent = new ConcurrentHashMap<>();
+
+    public void record(Bill bill) {
+        String customer = getCustomerKey(bill);
+        if (customer == null || bill.getCreatedAt() == null) {
+            return;
+        }
+        long hash = Hashing.murmur3_128().hashString(customer, StandardCharsets.UTF_8).asLong();
+        LocalDate day = bill.getCreatedAt().atZone(zone).toLocalDate();
+        // Added under the map's lock for the day, so flush() cannot drop the sketch between lookup and add
+        recent.compute(day, (d, daySketch) -> {
+            DaySketch current = daySketch == null ? new DaySketch(precision) : daySketch;
+            synchronized (current) {
+                current.sketch.add(hash);
+                current.dirty = true;
+            }
+            return current;
+        });
+    }
+
+    static String getCustomerKey(Bill bill) {
+        if (bill.getEmail() != null && !bill.getEmail().isBlank()) {
+            return "email:" + bill.getEmail().trim().toLowerCase(Locale.ROOT);
+        }
+        if (bill.getContactNumber() != null) {
+            String digits = bill.getContactNumber().replaceAll("\\D", "");
+            if (!digits.isEmpty()) {
+                return "phone:" + digits;
+            }
+        }
+        return null;
+    }
+
+    // Merging is idempotent, so a sketch that changes while it is written is simply written again next time
+    @Scheduled(fixedDelayString = "${cafe.hll.flush-delay-ms:10000}")
+    public void flush() {
+        LocalDate yesterday = LocalDate.now(zone).minusDays(1);
+        recent.forEach((day, daySketch) -> {
+            HyperLogLog copy = null;
+            synchronized (daySketch) {
+                if (daySketch.dirty) {
+                    copy = daySketch.sketch.copy();
+                    daySketch.dirty = false;
+                }
+            }
+            if (copy != null) {
+                try {
+                    customerSketchJdbcDao.merge(day, copy);
+                } catch (Exception ex) {
+                    log.error("Saving the customer sketch of {} failed", day, ex);
+                    synchronized (daySketch) {
+                        daySketch.dirty = true;
+                    }
+                    return;
+                }
+            }
+            // Older days are only read from the table once they are saved
+            if (day.isBefore(yesterday)) {
+                recent.computeIfPresent(day, (d, current) -> {
+                    synchronized (current) {
+                        return current == daySketch && !current.dirty ? null : current;
+                    }
+                });
+            }
+        });
+    }
+
+    // Distinct customers in [from, to] and on each of those days
+    public Map<String, Object> count(LocalDate from, LocalDate to) {
+        Map<LocalDate, HyperLogLog> days = new TreeMap<>(customerSketchJdbcDao.findRange(from, to));
+        recent.forEach((day, daySketch) -> {
+            if (!day.isBefore(from) && !day.isAfter(to)) {
+                HyperLogLog copy;
+                synchronized (daySketch) {
+                    copy = daySketch.sketch.copy();
+                }
+                days.merge(day, copy, HyperLogLog::union);
+            }
+        });
+
+        HyperLogLog range = null;
+        List<Map<String, Object>> perDay = new ArrayList<>();
+        for (Map.Entry<LocalDate, HyperLogLog> entry : days.entrySet()) {
+            range = range == null ? entry.getValue().copy() : HyperLogLog.union(range, entry.getValue());
+            Map<String, Object> day = new HashMap<>();
+            day.put("day", entry.getKey().toString());
+            day.put("uniqueCustomers", entry.getValue().estimate());
+            perDay.add(day);
+        }
+        Map<String, Object> map = new HashMap<>();
+        map.put("from", from.toString());
+        map.put("to", to.toString());
+        map.put("uniqueCustomers", range == null ? 0 : range.estimate());
+        map.put("relativeError", range == null ? new HyperLogLog(precision).getRelativeError() : range.getRelativeError());
+        map.put("days", perDay);
+        return map;
+    }
+}
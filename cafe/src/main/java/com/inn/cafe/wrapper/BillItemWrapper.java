@@ -0,0 +1,25 @@
+package com.inn.cafe.wrapper;
+
+import lombok.Data;
+
+// One line of a bill, as sent by the frontend in the productDetails json.
+// Parsed by CafeUtils.getBillItemsFromString.
+@Data
+public class BillItemWrapper {
+
+    // Id of the product, not of the line
+    private Integer id;
+
+    private String name;
+
+    private String category;
+
+    private Integer quantity;
+
+    private Double price;
+
+    private Double total;
+
+    // Not part of the json, filled in by BillJdbcDao.insertBillItems from the product
+    private Integer categoryId;
+}
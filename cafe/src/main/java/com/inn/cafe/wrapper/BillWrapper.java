@@ -0,0 +1,43 @@
+package com.inn.cafe.wrapper;
+
+import lombok.Data;
+
+// Row of the bill listing. Same json shape as the Bill POJO, but productDetails is only filled in
+// when the caller asks for it, so a page of bills does not drag every json blob along.
+@Data
+public class BillWrapper {
+
+    private Integer id;
+    private String uuid;
+    private String name;
+    private String email;
+    private String contactNumber;
+    private String paymentMethod;
+    private Integer total;
+    private String productDetails;
+    private String createdBy;
+
+    public BillWrapper() {
+
+    }
+
+    // Used by the Bill.getBillsPage* named queries
+    public BillWrapper(Integer id, String uuid, String name, String email, String contactNumber,
+                       String paymentMethod, Integer total, String createdBy) {
+        this.id = id;
+        this.uuid = uuid;
+        this.name = name;
+        this.email = email;
+        this.contactNumber = contactNumber;
+        this.paymentMethod = paymentMethod;
+        this.total = total;
+        this.createdBy = createdBy;
+    }
+
+    // Used by the Bill.getBillsPage*WithDetails named queries
+    public BillWrapper(Integer id, String uuid, String name, String email, String contactNumber,
+                       String paymentMethod, Integer total, String createdBy, String productDetails) {
+        this(id, uuid, name, email, contactNumber, paymentMethod, total, createdBy);
+        this.productDetails = productDetails;
+    }
+}
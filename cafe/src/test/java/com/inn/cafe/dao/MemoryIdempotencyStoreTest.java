@@ -0,0 +1,156 @@
+package com.inn.cafe.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryIdempotencyStoreTest {
+
+    private static final int THREADS = 32;
+
+    @Test
+    void concurrentRepeatsRunTheRequestOnce() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60_000, 5_000);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<IdempotencyStore.StoredResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return store.execute("user:key", "fp", () -> {
+                        runs.incrementAndGet();
+                        sleep(100);
+                        return new IdempotencyStore.StoredResponse(200, "{\"uuid\":\"BILL-1\"}", "fp", false);
+                    });
+                }));
+            }
+            start.countDown();
+            int replayed = 0;
+            for (Future<IdempotencyStore.StoredResponse> future : futures) {
+                IdempotencyStore.StoredResponse response = future.get();
+                assertEquals("{\"uuid\":\"BILL-1\"}", response.body());
+                if (response.replayed()) {
+                    replayed++;
+                }
+            }
+            assertEquals(1, runs.get());
+            assertEquals(THREADS - 1, replayed);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void serverErrorsAreNotKept() {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60_000, 1_000);
+        store.execute("user:key", "fp", () -> new IdempotencyStore.StoredResponse(500, "{}", "fp", false));
+        IdempotencyStore.StoredResponse retry = store.execute("user:key", "fp",
+                () -> new IdempotencyStore.StoredResponse(200, "ok", "fp", false));
+        assertEquals(200, retry.status());
+        assertFalse(retry.replayed());
+    }
+
+    @Test
+    void keysExpireAndTheStoreStaysBounded() {
+        MemoryIdempotencyStore expiring = new MemoryIdempotencyStore(100, 0, 1_000);
+        expiring.execute("user:key", "fp", () -> new IdempotencyStore.StoredResponse(200, "first", "fp", false));
+        IdempotencyStore.StoredResponse again = expiring.execute("user:key", "fp",
+                () -> new IdempotencyStore.StoredResponse(200, "second", "fp", false));
+        assertEquals("second", again.body());
+
+        MemoryIdempotencyStore bounded = new MemoryIdempotencyStore(10, 60_000, 1_000);
+        for (int i = 0; i < 1000; i++) {
+            bounded.execute("user:" + i, "fp", () -> new IdempotencyStore.StoredResponse(200, "ok", "fp", false));
+        }
+        assertTrue(bounded.size() <= 10);
+    }
+
+    @Test
+    void repeatGivesUpWhileTheFirstRequestIsRunning() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(100, 60_000, 50);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = new Thread(() -> store.execute("user:key", "fp", () -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return new IdempotencyStore.StoredResponse(200, "ok", "fp", false);
+        }));
+        first.start();
+        running.await();
+        assertNull(store.execute("user:key", "fp", () -> new IdempotencyStore.StoredResponse(200, "again", "fp", false)));
+        release.countDown();
+        first.join();
+    }
+
+    // Evicting a running request would let its repeat run the request a second time
+    @Test
+    void requestsInProgressAreNotEvicted() throws Exception {
+        MemoryIdempotencyStore store = new MemoryIdempotencyStore(2, 60_000, 50);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<IdempotencyStore.StoredResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                String key = "user:" + i;
+                futures.add(executor.submit(() -> store.execute(key, "fp", () -> {
+                    runs.incrementAndGet();
+                    running.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new IdempotencyStore.StoredResponse(200, "ok", "fp", false);
+                })));
+            }
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+
+            IdempotencyStore.StoredResponse full = store.execute("user:2", "fp",
+                    () -> new IdempotencyStore.StoredResponse(200, "ok", "fp", false));
+            assertEquals(503, full.status());
+            assertEquals(2, store.size());
+
+            // Still running, so the repeat waits and gives up instead of running it again
+            assertNull(store.execute("user:0", "fp", () -> new IdempotencyStore.StoredResponse(200, "again", "fp", false)));
+            release.countDown();
+            for (Future<IdempotencyStore.StoredResponse> future : futures) {
+                assertEquals(200, future.get(5, TimeUnit.SECONDS).status());
+            }
+            assertEquals(2, runs.get());
+
+            // Finished requests make room again
+            assertEquals(200, store.execute("user:2", "fp",
+                    () -> new IdempotencyStore.StoredResponse(200, "ok", "fp", false)).status());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.inn.cafe.dao;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Prints write / lookup / read / list timings for each receipt store. Only runs with -Pbenchmark,
+// ReceiptStoreTest checks what the stores do.
+@Tag("benchmark")
+class ReceiptStoreBenchmarkTest {
+
+    private static final int RECEIPTS = 5000;
+    private static final byte[] PDF = new byte[3 * 1024];
+
+    static {
+        Arrays.fill(PDF, (byte) 'x');
+    }
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void flatStore() throws Exception {
+        run("flat", new FileReceiptStore(tempDir.resolve("flat").toString(), 0));
+    }
+
+    @Test
+    void shardedStore() throws Exception {
+        run("sharded", new FileReceiptStore(tempDir.resolve("sharded").toString(), 2));
+    }
+
+    @Test
+    void segmentStore() throws Exception {
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.resolve("segment").toString())) {
+            run("segment", store);
+        }
+    }
+
+    private void run(String name, ReceiptStore store) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < RECEIPTS; i++) {
+            store.write("BILL-" + i, outputStream -> outputStream.write(PDF));
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RECEIPTS; i++) {
+            store.exists("BILL-" + i);
+        }
+        long existsNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < RECEIPTS; i++) {
+            store.read("BILL-" + i);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        ReceiptStoreTest.listAll(store);
+        long listNanos = System.nanoTime() - start;
+
+        System.out.printf("%-8s write %6.1f us, exists %5.1f us, read %5.1f us, list %5.1f us per receipt%n", name,
+                perReceipt(writeNanos), perReceipt(existsNanos), perReceipt(readNanos), perReceipt(listNanos));
+    }
+
+    private static double perReceipt(long nanos) {
+        return nanos / 1000.0 / RECEIPTS;
+    }
+}
@@ -0,0 +1,134 @@
+package com.inn.cafe.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Checks the receipt stores behave the same. ReceiptStoreBenchmarkTest times them.
+class ReceiptStoreTest {
+
+    private static final int RECEIPTS = 300;
+    private static final byte[] PDF = new byte[3 * 1024];
+
+    static {
+        Arrays.fill(PDF, (byte) 'x');
+    }
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void flatStore() throws Exception {
+        run(new FileReceiptStore(tempDir.resolve("flat").toString(), 0));
+    }
+
+    @Test
+    void shardedStore() throws Exception {
+        FileReceiptStore store = new FileReceiptStore(tempDir.resolve("sharded").toString(), 2);
+        // A receipt from before fanout and a file that is not a receipt at all
+        Files.createDirectories(store.getBaseDirectory());
+        Files.write(store.getBaseDirectory().resolve("BILL-legacy.pdf"), PDF);
+        Files.write(store.getBaseDirectory().resolve("notes.pdf"), PDF);
+        List<String> listed = listAll(store);
+        assertEquals(List.of("BILL-legacy"), listed);
+        Files.delete(store.getBaseDirectory().resolve("BILL-legacy.pdf"));
+        run(store);
+        // Only the rename makes a receipt visible, so no temp files are left behind
+        try (Stream<Path> files = Files.walk(store.getBaseDirectory())) {
+            assertEquals(0, files.filter(path -> path.getFileName().toString().startsWith(".tmp-")).count());
+        }
+    }
+
+    @Test
+    void segmentStore() throws Exception {
+        String location = tempDir.resolve("segment").toString();
+        try (SegmentReceiptStore store = new SegmentReceiptStore(location)) {
+            run(store);
+        }
+        // The index is rebuilt from the segment file, deletes included
+        try (SegmentReceiptStore reopened = new SegmentReceiptStore(location)) {
+            assertTrue(reopened.exists("BILL-1"));
+            assertFalse(reopened.exists("BILL-0"));
+            assertArrayEquals(PDF, reopened.read("BILL-1"));
+        }
+    }
+
+    @Test
+    void abandonedWriteIsNotVisible() throws Exception {
+        FileReceiptStore store = new FileReceiptStore(tempDir.resolve("abandoned").toString(), 2);
+        try (ReceiptStore.PendingReceipt pending = store.create("BILL-1")) {
+            pending.getOutputStream().write(PDF, 0, 100);
+            assertFalse(store.exists("BILL-1"));
+        }
+        assertFalse(store.exists("BILL-1"));
+        assertNull(store.read("BILL-1"));
+    }
+
+    @Test
+    void uuidsThatCouldLeaveTheStoreAreRejected() throws Exception {
+        Path outside = tempDir.resolve("secret.pdf");
+        Files.write(outside, PDF);
+        FileReceiptStore flat = new FileReceiptStore(tempDir.resolve("flat").toString(), 0);
+        FileReceiptStore sharded = new FileReceiptStore(tempDir.resolve("sharded").toString(), 2);
+        try (SegmentReceiptStore segment = new SegmentReceiptStore(tempDir.resolve("segment").toString())) {
+            for (ReceiptStore store : List.of(flat, sharded, segment)) {
+                for (String uuid : Arrays.asList("../secret", "..", "BILL-1/../../secret", "BILL 1", "", null)) {
+                    assertThrows(IllegalArgumentException.class, () -> store.exists(uuid), uuid);
+                    assertThrows(IllegalArgumentException.class, () -> store.read(uuid), uuid);
+                    assertThrows(IllegalArgumentException.class, () -> store.delete(uuid), uuid);
+                    assertThrows(IllegalArgumentException.class, () -> store.write(uuid, out -> out.write(PDF)), uuid);
+                }
+            }
+        }
+        assertArrayEquals(PDF, Files.readAllBytes(outside));
+    }
+
+    private void run(ReceiptStore store) throws Exception {
+        for (int i = 0; i < RECEIPTS; i++) {
+            store.write("BILL-" + i, outputStream -> outputStream.write(PDF));
+        }
+        for (int i = 0; i < RECEIPTS; i++) {
+            assertTrue(store.exists("BILL-" + i));
+            assertEquals(PDF.length, store.size("BILL-" + i));
+            assertArrayEquals(PDF, store.read("BILL-" + i));
+        }
+        assertFalse(store.exists("BILL-missing"));
+        assertNull(store.read("BILL-missing"));
+
+        assertTrue(store.delete("BILL-0"));
+        assertFalse(store.delete("BILL-0"));
+        assertFalse(store.exists("BILL-0"));
+        assertEquals(-1, store.size("BILL-0"));
+
+        List<String> listed = listAll(store);
+        // Paging through the store returns every receipt exactly once
+        assertEquals(RECEIPTS - 1, listed.size());
+        assertEquals(RECEIPTS - 1, new HashSet<>(listed).size());
+        assertFalse(listed.contains("BILL-0"));
+    }
+
+    static List<String> listAll(ReceiptStore store) throws Exception {
+        List<String> uuids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ReceiptStore.ReceiptPage page = store.list(cursor, 128);
+            uuids.addAll(page.uuids());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return uuids;
+    }
+}
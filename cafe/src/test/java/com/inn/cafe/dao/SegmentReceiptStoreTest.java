@@ -0,0 +1,102 @@
+package com.inn.cafe.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SegmentReceiptStoreTest {
+
+    private static final byte[] PDF = new byte[1000];
+    // uuid length, "BILL-n", data length and crc before the data
+    private static final int RECORD_LENGTH = Short.BYTES + 6 + Integer.BYTES * 2 + PDF.length;
+
+    static {
+        Arrays.fill(PDF, (byte) 'x');
+    }
+
+    @TempDir
+    Path tempDir;
+
+    private Path segment() {
+        return tempDir.resolve("receipts.seg");
+    }
+
+    // Flips one byte of the data of the record-th record
+    private void corrupt(int record) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment().toFile(), "rw")) {
+            long position = (long) record * RECORD_LENGTH + RECORD_LENGTH - 10;
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0xff);
+        }
+    }
+
+    @Test
+    void damagedReceiptIsNotReturned() throws Exception {
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            store.write("BILL-1", outputStream -> outputStream.write(PDF));
+            store.write("BILL-2", outputStream -> outputStream.write(PDF));
+            corrupt(0);
+            assertThrows(IOException.class, () -> store.read("BILL-1"));
+            assertArrayEquals(PDF, store.read("BILL-2"));
+        }
+    }
+
+    @Test
+    void loadingStopsAtTheFirstDamagedRecord() throws Exception {
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            for (int i = 1; i <= 3; i++) {
+                store.write("BILL-" + i, outputStream -> outputStream.write(PDF));
+            }
+        }
+        corrupt(1);
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            assertTrue(store.exists("BILL-1"));
+            assertFalse(store.exists("BILL-2"));
+            assertFalse(store.exists("BILL-3"));
+            assertEquals(RECORD_LENGTH, Files.size(segment()));
+            // Appends continue after the last good record
+            store.write("BILL-4", outputStream -> outputStream.write(PDF));
+        }
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            assertArrayEquals(PDF, store.read("BILL-1"));
+            assertArrayEquals(PDF, store.read("BILL-4"));
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyTheLiveReceipts() throws Exception {
+        byte[] updated = "updated".getBytes(StandardCharsets.UTF_8);
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            store.write("BILL-1", outputStream -> outputStream.write(PDF));
+            store.write("BILL-2", outputStream -> outputStream.write(PDF));
+            store.delete("BILL-1");
+            store.write("BILL-2", outputStream -> outputStream.write(updated));
+            long before = Files.size(segment());
+            store.compact(tempDir.resolve("receipts.seg.compact"));
+            assertTrue(Files.size(segment()) < before);
+            assertFalse(Files.exists(tempDir.resolve("receipts.seg.compact")));
+            assertArrayEquals(updated, store.read("BILL-2"));
+            // Still appendable after the swap
+            store.write("BILL-3", outputStream -> outputStream.write(PDF));
+        }
+        try (SegmentReceiptStore store = new SegmentReceiptStore(tempDir.toString())) {
+            assertFalse(store.exists("BILL-1"));
+            assertArrayEquals(updated, store.read("BILL-2"));
+            assertArrayEquals(PDF, store.read("BILL-3"));
+        }
+    }
+}
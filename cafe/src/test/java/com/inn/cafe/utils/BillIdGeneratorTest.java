@@ -0,0 +1,115 @@
+package com.inn.cafe.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BillIdGeneratorTest {
+
+    private static final int THREADS = 8;
+    private static final int IDS_PER_THREAD = 500_000;
+
+    @Test
+    void concurrentIdsAreUniqueAndOrderedPerThread() throws Exception {
+        BillIdGenerator generator = new BillIdGenerator(7, System::currentTimeMillis, 1000);
+        long[][] ids = new long[THREADS][IDS_PER_THREAD];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long[] mine = ids[t];
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                for (int i = 0; i < IDS_PER_THREAD; i++) {
+                    mine[i] = generator.nextId();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] all = new long[THREADS * IDS_PER_THREAD];
+        for (int t = 0; t < THREADS; t++) {
+            for (int i = 1; i < IDS_PER_THREAD; i++) {
+                assertTrue(ids[t][i] > ids[t][i - 1], "ids must grow within a thread");
+            }
+            System.arraycopy(ids[t], 0, all, t * IDS_PER_THREAD, IDS_PER_THREAD);
+        }
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertTrue(all[i] != all[i - 1], "duplicate id " + all[i]);
+        }
+        assertEquals(THREADS * IDS_PER_THREAD, Arrays.stream(all).distinct().count());
+        // Every id carries the node it came from
+        assertEquals(7, (all[0] >>> 12) & BillIdGenerator.MAX_NODE_ID);
+        assertEquals(7, (all[all.length - 1] >>> 12) & BillIdGenerator.MAX_NODE_ID);
+    }
+
+    @Test
+    void clockGoingBackwardsDoesNotRepeatIds() {
+        AtomicLong now = new AtomicLong(BillIdGenerator.EPOCH + 10_000);
+        BillIdGenerator generator = new BillIdGenerator(1, now::get, 60_000);
+        long first = generator.nextId();
+        now.addAndGet(-5_000);
+        long second = generator.nextId();
+        assertTrue(second > first);
+        now.addAndGet(10_000);
+        assertTrue(generator.nextId() > second);
+    }
+
+    @Test
+    void exhaustedSequenceBorrowsTheNextMillisecond() {
+        BillIdGenerator generator = new BillIdGenerator(1, () -> BillIdGenerator.EPOCH + 1, 1000);
+        long previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long next = generator.nextId();
+            assertTrue(next > previous);
+            previous = next;
+        }
+    }
+
+    // Ids borrowed from the future must stay within the allowance, or a restart could issue them again
+    @Test
+    void borrowingStopsAtTheAllowanceUntilTheClockCatchesUp() throws Exception {
+        AtomicLong now = new AtomicLong(BillIdGenerator.EPOCH + 10_000);
+        BillIdGenerator generator = new BillIdGenerator(1, now::get, 1);
+        for (int i = 0; i < 2 * 4096; i++) {
+            generator.nextId();
+        }
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(generator::nextId);
+        Thread.sleep(100);
+        assertFalse(waiting.isDone());
+        now.incrementAndGet();
+        long id = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(10_002, id >>> 22);
+    }
+
+    @Test
+    void nodesNeverShareIds() {
+        long millis = BillIdGenerator.EPOCH + 42;
+        BillIdGenerator first = new BillIdGenerator(1, () -> millis, 1000);
+        BillIdGenerator second = new BillIdGenerator(2, () -> millis, 1000);
+        long a = first.nextId();
+        long b = second.nextId();
+        assertTrue(a != b);
+        assertEquals(1, (a >>> 12) & BillIdGenerator.MAX_NODE_ID);
+        assertEquals(2, (b >>> 12) & BillIdGenerator.MAX_NODE_ID);
+    }
+}
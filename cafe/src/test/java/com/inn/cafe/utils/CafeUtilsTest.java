@@ -0,0 +1,77 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CafeUtilsTest {
+
+    @Test
+    void parsesItemsWithNumbersOrQuotedNumbers() {
+        List<BillItemWrapper> items = CafeUtils.getBillItemsFromString(
+                "[{\"id\":3,\"name\":\"Latte\",\"category\":\"Drinks\",\"quantity\":\"2\",\"price\":120,\"total\":\"240\",\"extra\":{\"a\":1}}," +
+                "{\"id\":4,\"name\":\"Bun\",\"category\":\"Food\",\"quantity\":1,\"price\":50.5,\"total\":50.5}]");
+        assertEquals(2, items.size());
+        assertEquals(3, items.get(0).getId());
+        assertEquals(2, items.get(0).getQuantity());
+        assertEquals(240.0, items.get(0).getTotal());
+        assertEquals("Food", items.get(1).getCategory());
+        assertEquals(50.5, items.get(1).getPrice());
+    }
+
+    @Test
+    void rejectsInvalidItems() {
+        assertThrows(IllegalArgumentException.class, () -> CafeUtils.getBillItemsFromString(""));
+        assertThrows(IllegalArgumentException.class, () -> CafeUtils.getBillItemsFromString("{\"name\":\"x\"}"));
+        assertThrows(IllegalArgumentException.class, () -> CafeUtils.getBillItemsFromString(
+                "[{\"name\":\"Latte\",\"quantity\":0,\"price\":1,\"total\":0}]"));
+        assertThrows(IllegalArgumentException.class, () -> CafeUtils.getBillItemsFromString(
+                "[{\"name\":\"Latte\",\"quantity\":\"two\",\"price\":1,\"total\":2}]"));
+    }
+
+    // The typed parse has to allocate far less than the old JSONArray + per item Gson path it replaced
+    @Test
+    void largeOrderAllocatesLessThanTheLegacyParse() throws Exception {
+        StringBuilder details = new StringBuilder("[");
+        for (int i = 0; i < 500; i++) {
+            details.append(i == 0 ? "" : ",").append("{\"id\":").append(i).append(",\"name\":\"Item ").append(i)
+                    .append("\",\"category\":\"Food\",\"quantity\":\"1\",\"price\":10,\"total\":10}");
+        }
+        String data = details.append(']').toString();
+        for (int i = 0; i < 50; i++) {
+            parseLegacy(data);
+            CafeUtils.getBillItemsFromString(data);
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // Smallest of a few runs, so a one-off allocation (class loading, jit) does not count
+        long legacy = Long.MAX_VALUE;
+        long typed = Long.MAX_VALUE;
+        for (int run = 0; run < 5; run++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            parseLegacy(data);
+            legacy = Math.min(legacy, threadBean.getThreadAllocatedBytes(threadId) - before);
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            assertEquals(500, CafeUtils.getBillItemsFromString(data).size());
+            typed = Math.min(typed, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        // About 8x less today, 3x leaves room for jdk and library changes
+        assertTrue(typed * 3 < legacy, "typed parse " + typed + " bytes, legacy " + legacy + " bytes");
+        assertTrue(typed < 500 * 2048, "typed parse allocated " + typed + " bytes for 500 items");
+    }
+
+    private static void parseLegacy(String data) throws Exception {
+        JSONArray jsonArray = CafeUtils.getJsonArrayFromString(data);
+        for (int i = 0; i < jsonArray.length(); i++) {
+            new com.google.gson.Gson().fromJson(jsonArray.getString(i),
+                    new com.google.gson.reflect.TypeToken<java.util.Map<String, Object>>(){}.getType());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.inn.cafe.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DashboardAggregatorTest {
+
+    private DashboardAggregator aggregator;
+
+    @BeforeEach
+    void setUp() {
+        aggregator = new DashboardAggregator();
+        ReflectionTestUtils.setField(aggregator, "poolSize", 4);
+        aggregator.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        aggregator.shutdown();
+    }
+
+    @Test
+    void widgetsRunInParallel() {
+        List<DashboardAggregator.Widget> widgets = List.of(
+                new DashboardAggregator.Widget("a", () -> sleep(300, "a"), 2000),
+                new DashboardAggregator.Widget("b", () -> sleep(300, "b"), 2000),
+                new DashboardAggregator.Widget("c", () -> sleep(300, "c"), 2000));
+        DashboardAggregator.Result result = aggregator.fetch(widgets);
+
+        assertEquals(Map.of("a", "a", "b", "b", "c", "c"), result.widgets());
+        assertFalse(result.partial());
+        // One after another would take 900 ms
+        assertTrue(result.tookMs() < 800, "took " + result.tookMs() + " ms");
+    }
+
+    @Test
+    void slowAndFailingWidgetsAreLeftOut() {
+        List<DashboardAggregator.Widget> widgets = List.of(
+                new DashboardAggregator.Widget("fast", () -> "ok", 1000),
+                new DashboardAggregator.Widget("slow", () -> sleep(5000, "late"), 200),
+                new DashboardAggregator.Widget("broken", () -> {
+                    throw new IllegalStateException("no database");
+                }, 1000));
+        DashboardAggregator.Result result = aggregator.fetch(widgets);
+
+        assertEquals(Map.of("fast", "ok"), result.widgets());
+        assertEquals(Map.of("slow", "timeout", "broken", "failed"), result.errors());
+        assertTrue(result.partial());
+        assertTrue(result.tookMs() < 2000, "took " + result.tookMs() + " ms");
+    }
+
+    private static Object sleep(long millis, Object value) throws InterruptedException {
+        Thread.sleep(millis);
+        return value;
+    }
+}
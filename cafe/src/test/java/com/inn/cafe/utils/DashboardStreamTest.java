@@ -0,0 +1,187 @@
+package com.inn.cafe.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+class DashboardStreamTest {
+
+    // Records the id of every event, optionally blocking each write until released like a client that stopped reading
+    private static class RecordingEmitter extends SseEmitter {
+        final List<String> ids = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            String event = builder.build().stream().map(data -> data.getData().toString()).collect(Collectors.joining());
+            ids.add(event.substring(event.indexOf("id:") + 3, event.indexOf('\n', event.indexOf("id:"))));
+        }
+    }
+
+    private final AtomicLong version = new AtomicLong(1);
+    private DashboardStream stream;
+
+    @BeforeEach
+    void setUp() {
+        DashboardCounters counters = Mockito.mock(DashboardCounters.class);
+        when(counters.getVersion()).thenAnswer(invocation -> version.get());
+        when(counters.getCounts()).thenReturn(Map.of("bill", 1L));
+        SalesRollups salesRollups = Mockito.mock(SalesRollups.class);
+        when(salesRollups.query(any(), any(), any(), any())).thenReturn(List.of());
+
+        stream = new DashboardStream();
+        ReflectionTestUtils.setField(stream, "dashboardCounters", counters);
+        ReflectionTestUtils.setField(stream, "salesRollups", salesRollups);
+        ReflectionTestUtils.setField(stream, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(stream, "maxClients", 10);
+        ReflectionTestUtils.setField(stream, "stallMillis", 60_000L);
+        ReflectionTestUtils.setField(stream, "heartbeatMillis", 60_000L);
+        ReflectionTestUtils.setField(stream, "senderThreads", 2);
+        stream.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stream.shutdown();
+    }
+
+    @Test
+    void slowClientOnlyGetsTheLatestFrame() throws InterruptedException {
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        CountDownLatch stuck = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(stuck);
+        stream.subscribe(fast);
+        stream.subscribe(slow);
+        // Otherwise the frame offered on subscribe may be replaced by the first publish
+        waitFor(() -> fast.ids.size() == 1);
+
+        for (int i = 2; i <= 6; i++) {
+            version.set(i);
+            stream.publish();
+            waitFor(() -> fast.ids.get(fast.ids.size() - 1).equals(Long.toString(version.get())));
+        }
+        assertEquals("6", fast.ids.get(fast.ids.size() - 1));
+        // Frames arrive in order, none twice
+        for (int i = 1; i < fast.ids.size(); i++) {
+            assertTrue(Long.parseLong(fast.ids.get(i)) > Long.parseLong(fast.ids.get(i - 1)));
+        }
+
+        // The slow client was stuck writing its first frame (1, or 2 if the sender only got to it later),
+        // the frames after it were replaced while it waited
+        stuck.countDown();
+        waitFor(() -> slow.ids.size() == 2);
+        Thread.sleep(100);
+        assertEquals(2, slow.ids.size());
+        assertEquals("6", slow.ids.get(1));
+    }
+
+    @Test
+    void unchangedVersionSendsNothing() throws InterruptedException {
+        RecordingEmitter client = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(client);
+        waitFor(() -> client.ids.size() == 1);
+        stream.publish();
+        stream.publish();
+        Thread.sleep(100);
+        assertEquals(List.of("1"), client.ids);
+    }
+
+    @Test
+    void stalledClientsDoNotHoldUpTheSenders() throws InterruptedException {
+        stream.shutdown();
+        ReflectionTestUtils.setField(stream, "senderThreads", 1);
+        ReflectionTestUtils.setField(stream, "stallMillis", 50L);
+        stream.init();
+        CountDownLatch stuck = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(stuck);
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        stream.subscribe(stalled);
+        stream.subscribe(fast);
+        // The only sender is stuck writing to the stalled client, the fast client's frame waits behind it
+        Thread.sleep(100);
+        assertTrue(fast.ids.isEmpty());
+
+        // Publish keeps running like the scheduler would, a slow machine may not have started the write
+        // or passed stall-ms on the first run
+        waitFor(() -> {
+            stream.publish();
+            return fast.ids.size() == 1;
+        });
+        assertEquals(1, stream.getSubscriberCount());
+        version.set(2);
+        stream.publish();
+        waitFor(() -> fast.ids.size() == 2);
+
+        // Once the blocked write returns the pool shrinks back
+        stuck.countDown();
+        ThreadPoolExecutor sender = (ThreadPoolExecutor) ReflectionTestUtils.getField(stream, "sender");
+        waitFor(() -> sender.getCorePoolSize() == 1);
+    }
+
+    @Test
+    void concurrentSubscribesNeverGoPastMaxClients() throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int j = 0; j < 5; j++) {
+                    if (stream.subscribe(new RecordingEmitter(new CountDownLatch(0))) != null) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(10, accepted.get());
+        assertEquals(10, stream.getSubscriberCount());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
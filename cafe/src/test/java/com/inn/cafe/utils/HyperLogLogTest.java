@@ -0,0 +1,76 @@
+package com.inn.cafe.utils;
+
+import com.google.common.hash.Hashing;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimatesStayWithinThreeStandardErrors() {
+        for (int precision : new int[]{10, 12, 14}) {
+            for (int customers : new int[]{100, 5_000, 200_000}) {
+                HyperLogLog sketch = new HyperLogLog(precision);
+                for (int i = 0; i < customers; i++) {
+                    sketch.add(hash("customer" + i + "@example.com"));
+                    // Repeat customers do not count twice
+                    sketch.add(hash("customer" + i + "@example.com"));
+                }
+                double error = Math.abs(sketch.estimate() - customers) / (double) customers;
+                assertTrue(error <= 3 * sketch.getRelativeError(), "precision " + precision + ", " + customers + " customers");
+                // Memory is fixed by the precision, however many customers come in
+                assertEquals(1 << precision, sketch.toBytes().length);
+            }
+        }
+    }
+
+    // Small days are counted almost exactly (linear counting), the standard error only matters for large ones
+    @Test
+    void smallCountsAreNearlyExact() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < 100; i++) {
+            sketch.add(hash("customer" + i + "@example.com"));
+        }
+        assertTrue(Math.abs(sketch.estimate() - 100) <= 2, "estimate " + sketch.estimate());
+    }
+
+    @Test
+    void mergedDaysEqualOneSketchOfTheWholeRange() {
+        HyperLogLog monday = new HyperLogLog(12);
+        HyperLogLog tuesday = new HyperLogLog(12);
+        HyperLogLog week = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            // Half of Tuesday's customers were also there on Monday
+            monday.add(hash("c" + i));
+            tuesday.add(hash("c" + (i + 15_000)));
+            week.add(hash("c" + i));
+            week.add(hash("c" + (i + 15_000)));
+        }
+        HyperLogLog union = HyperLogLog.union(monday, tuesday);
+        assertArrayEquals(week.toBytes(), union.toBytes());
+        assertTrue(Math.abs(union.estimate() - 45_000) <= 3 * 45_000 * union.getRelativeError());
+    }
+
+    @Test
+    void foldingEqualsCountingAtTheLowerPrecision() {
+        HyperLogLog high = new HyperLogLog(14);
+        HyperLogLog low = new HyperLogLog(10);
+        for (int i = 0; i < 50_000; i++) {
+            long hash = hash("c" + i);
+            high.add(hash);
+            low.add(hash);
+        }
+        HyperLogLog folded = high.fold(10);
+        assertArrayEquals(low.toBytes(), folded.toBytes());
+        assertEquals(low.estimate(), HyperLogLog.union(high, low).estimate());
+    }
+
+    private static long hash(String value) {
+        return Hashing.murmur3_128().hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+}
@@ -0,0 +1,77 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.dao.ReceiptStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+class PdfCacheTest {
+
+    private static final byte[] PDF = "%PDF-1.4".getBytes();
+
+    private ReceiptStore receiptStore;
+    private PdfCache cache;
+
+    @BeforeEach
+    void setUp() {
+        receiptStore = Mockito.mock(ReceiptStore.class);
+        cache = new PdfCache();
+        ReflectionTestUtils.setField(cache, "receiptStore", receiptStore);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(cache, "maxEntryBytes", 1024L);
+    }
+
+    @Test
+    void storeReadsAreCached() throws Exception {
+        when(receiptStore.read("BILL-1")).thenReturn(PDF);
+        byte[] first = cache.get("BILL-1");
+        assertSame(first, cache.getIfPresent("BILL-1"));
+        cache.evict("BILL-1");
+        assertNull(cache.getIfPresent("BILL-1"));
+    }
+
+    // A read that got the bytes before the delete must not put them back after the evict
+    @Test
+    void loadRacingADeleteDoesNotBringTheReceiptBack() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch deleted = new CountDownLatch(1);
+        AtomicBoolean exists = new AtomicBoolean(true);
+        when(receiptStore.read("BILL-1")).thenAnswer(invocation -> {
+            byte[] bytes = exists.get() ? PDF : null;
+            reading.countDown();
+            deleted.await();
+            return bytes;
+        });
+        CompletableFuture<byte[]> reader = CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get("BILL-1");
+            } catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        // deleteBill: store first, then cache
+        exists.set(false);
+        cache.evict("BILL-1");
+        deleted.countDown();
+
+        // The racing reader still answers with what it read, but nothing is cached
+        assertArrayEquals(PDF, reader.get(5, TimeUnit.SECONDS));
+        assertNull(cache.getIfPresent("BILL-1"));
+        assertNull(cache.get("BILL-1"));
+        assertNull(cache.getIfPresent("BILL-1"));
+    }
+}
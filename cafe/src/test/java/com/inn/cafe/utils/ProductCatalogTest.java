@@ -0,0 +1,198 @@
+package com.inn.cafe.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.inn.cafe.POJO.Category;
+import com.inn.cafe.dao.CategoryDao;
+import com.inn.cafe.dao.ProductDao;
+import com.inn.cafe.wrapper.ProductWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductCatalogTest {
+
+    private final List<ProductWrapper> products = new ArrayList<>();
+    private ProductDao productDao;
+    private ProductCatalog catalog;
+
+    @BeforeEach
+    void setUp() {
+        products.add(new ProductWrapper(1, "Espresso", "Strong", 3, "true", 10, "Coffee"));
+        products.add(new ProductWrapper(2, "Latte", "Milky", 4, "false", 10, "Coffee"));
+        products.add(new ProductWrapper(3, "Green tea", "Light", 2, "true", 20, "Tea"));
+        productDao = Mockito.mock(ProductDao.class);
+        when(productDao.getAllProduct()).thenAnswer(invocation -> new ArrayList<>(products));
+        CategoryDao categoryDao = Mockito.mock(CategoryDao.class);
+        when(categoryDao.findAll()).thenReturn(List.of(category(10, "Coffee"), category(20, "Tea"), category(30, "Cakes")));
+        catalog = new ProductCatalog();
+        ReflectionTestUtils.setField(catalog, "productDao", productDao);
+        ReflectionTestUtils.setField(catalog, "categoryDao", categoryDao);
+        ReflectionTestUtils.setField(catalog, "objectMapper", new ObjectMapper());
+    }
+
+    private static Category category(int id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        return category;
+    }
+
+    @Test
+    void readsAreServedFromOneLoad() {
+        assertEquals(3, catalog.getAll().size());
+        assertEquals(List.of(1), catalog.getActiveByCategory(10).stream().map(ProductWrapper::getId).toList());
+        assertEquals(List.of(), catalog.getActiveByCategory(99));
+        assertEquals("Green tea", catalog.getById(3).getName());
+        assertNull(catalog.getById(3).getCategoryId());
+        assertNull(catalog.getById(42));
+        verify(productDao, times(1)).getAllProduct();
+    }
+
+    @Test
+    void refreshPicksUpWrites() {
+        assertEquals(1, catalog.getActiveByCategory(10).size());
+        products.set(1, new ProductWrapper(2, "Latte", "Milky", 4, "true", 10, "Coffee"));
+        catalog.refresh();
+        assertEquals(List.of(1, 2), catalog.getActiveByCategory(10).stream().map(ProductWrapper::getId).toList());
+        verify(productDao, times(2)).getAllProduct();
+    }
+
+    @Test
+    void readersKeepTheOldSnapshotWhileARefreshLoads() throws Exception {
+        assertEquals(1, catalog.getActiveByCategory(10).size());
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(productDao.getAllProduct()).thenAnswer(invocation -> {
+            loading.countDown();
+            release.await();
+            return List.of(new ProductWrapper(2, "Latte", "Milky", 4, "true", 10, "Coffee"));
+        });
+        Thread writer = new Thread(catalog::refresh);
+        writer.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        // Served from the old snapshot without waiting for the load
+        assertEquals(List.of(1), catalog.getActiveByCategory(10).stream().map(ProductWrapper::getId).toList());
+        release.countDown();
+        writer.join(5000);
+        assertEquals(List.of(2), catalog.getActiveByCategory(10).stream().map(ProductWrapper::getId).toList());
+    }
+
+    @Test
+    void failedRefreshKeepsTheOldSnapshotUntilTheNextRead() {
+        assertEquals(3, catalog.getAll().size());
+        when(productDao.getAllProduct()).thenThrow(new IllegalStateException("down"))
+                .thenAnswer(invocation -> new ArrayList<>(products.subList(0, 1)));
+        catalog.refresh();
+        assertEquals(1, catalog.getAll().size());
+        assertEquals(1, catalog.getAll().size());
+        verify(productDao, times(3)).getAllProduct();
+    }
+
+    @Test
+    void encodedBodiesAreBuiltOncePerSnapshot() throws Exception {
+        EncodedJson all = catalog.getAllJson();
+        assertSame(all, catalog.getAllJson());
+        assertEquals("Espresso", new ObjectMapper().readTree(body(catalog.getActiveByCategoryJson(10), null)).get(0).get("name").asText());
+        assertEquals("[{\"id\":10,\"name\":\"Coffee\"},{\"id\":20,\"name\":\"Tea\"}]", body(catalog.getCategoriesJson(true), "gzip"));
+        assertEquals(3, new ObjectMapper().readTree(body(catalog.getCategoriesJson(false), "br, gzip;q=0.5")).size());
+
+        catalog.refresh();
+        assertNotSame(all, catalog.getAllJson());
+    }
+
+    @Test
+    void gzipIsOnlySentWhenAccepted() {
+        assertFalse(EncodedJson.acceptsGzip(null));
+        assertFalse(EncodedJson.acceptsGzip("identity"));
+        assertFalse(EncodedJson.acceptsGzip("gzip;q=0, *"));
+        assertTrue(EncodedJson.acceptsGzip("gzip, deflate, br"));
+        assertTrue(EncodedJson.acceptsGzip("*"));
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            json.append("{\"name\":\"Espresso\"},");
+        }
+        EncodedJson encoded = EncodedJson.of(json.append("{}]").toString().getBytes(StandardCharsets.UTF_8), null);
+        ResponseEntity<byte[]> gzipped = encoded.toResponseEntity("gzip", HttpStatus.OK);
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gzipped.getBody().length < encoded.getSize());
+        assertNull(encoded.toResponseEntity("identity", HttpStatus.OK).getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        // Tiny bodies are not worth compressing
+        assertNull(EncodedJson.EMPTY_LIST.toResponseEntity("gzip", HttpStatus.OK).getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    @Test
+    void eTagFollowsTheCatalogVersion() {
+        String eTag = catalog.getAllJson().getETag();
+        assertEquals(eTag, catalog.getETag());
+        assertEquals(eTag, catalog.getActiveByCategoryJson(99).getETag());
+        assertTrue(catalog.isNotModified(eTag));
+        assertTrue(catalog.isNotModified("\"other\", " + eTag.substring(2)));
+        assertFalse(catalog.isNotModified(null));
+        assertFalse(catalog.isNotModified("W/\"other\""));
+
+        catalog.refresh();
+        assertFalse(catalog.isNotModified(eTag));
+        assertNotEquals(eTag, catalog.getAllJson().getETag());
+        assertTrue(catalog.isNotModified(catalog.getAllJson().getETag()));
+
+        // Checking the version never loads anything
+        verify(productDao, times(2)).getAllProduct();
+        ResponseEntity<byte[]> notModified = EncodedJson.notModified(catalog.getETag());
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.getStatusCode());
+        assertEquals(catalog.getETag(), notModified.getHeaders().getETag());
+        assertNull(notModified.getBody());
+    }
+
+    // Another node or a SQL edit changed the menu without calling refresh()
+    @Test
+    void periodicReloadPicksUpChangesMadeElsewhere() {
+        EncodedJson before = catalog.getAllJson();
+        catalog.reloadIfChanged();
+        assertSame(before, catalog.getAllJson());
+        assertTrue(catalog.isNotModified(before.getETag()));
+
+        products.add(new ProductWrapper(4, "Mocha", "Sweet", 5, "true", 10, "Coffee"));
+        catalog.reloadIfChanged();
+        assertFalse(catalog.isNotModified(before.getETag()));
+        assertEquals(4, catalog.getAll().size());
+        assertEquals(catalog.getETag(), catalog.getAllJson().getETag());
+    }
+
+    // The body as the client would read it
+    private static String body(EncodedJson encoded, String acceptEncoding) throws Exception {
+        ResponseEntity<byte[]> response = encoded.toResponseEntity(acceptEncoding, HttpStatus.OK);
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeaders().getFirst(HttpHeaders.VARY));
+        byte[] bytes = response.getBody();
+        if ("gzip".equals(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+                bytes = in.readAllBytes();
+            }
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
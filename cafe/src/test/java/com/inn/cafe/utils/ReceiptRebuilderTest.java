@@ -0,0 +1,126 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.dao.FileReceiptStore;
+import com.inn.cafe.dao.ReceiptStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptRebuilderTest {
+
+    @TempDir
+    Path directory;
+
+    private ReceiptStore receiptStore;
+    private ReceiptRebuilder rebuilder;
+
+    @BeforeEach
+    void setUp() {
+        receiptStore = new FileReceiptStore(directory.toString(), 0);
+        rebuilder = new ReceiptRebuilder();
+        ReflectionTestUtils.setField(rebuilder, "receiptStore", receiptStore);
+        ReflectionTestUtils.setField(rebuilder, "receiptTemplate", new ReceiptTemplate());
+        ReflectionTestUtils.setField(rebuilder, "receiptRenderPool", Mockito.mock(ReceiptRenderPool.class));
+    }
+
+    private static Bill bill(String uuid) {
+        Bill bill = new Bill();
+        bill.setUuid(uuid);
+        bill.setName("Ann");
+        bill.setEmail("ann@example.com");
+        bill.setContactNumber("0700000000");
+        bill.setPaymentMethod("Cash");
+        bill.setTotal(7);
+        bill.setProductDetails("[{\"name\":\"Latte\",\"category\":\"Coffee\",\"quantity\":\"2\",\"price\":3.5,\"total\":7}]");
+        return bill;
+    }
+
+    @Test
+    void firstCallerGetsTheRenderAsItIsStored() throws Exception {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        assertTrue(rebuilder.rebuildTo(bill("BILL-1"), first));
+        byte[] stored = receiptStore.read("BILL-1");
+        assertTrue(stored.length > 0);
+        assertArrayEquals(stored, first.toByteArray());
+
+        // Already stored, copied from the store
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertTrue(rebuilder.rebuildTo(bill("BILL-1"), second));
+        assertArrayEquals(stored, second.toByteArray());
+    }
+
+    @Test
+    void clientThatGoesAwayDoesNotLoseTheStoredReceipt() {
+        OutputStream closed = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        assertThrows(IOException.class, () -> rebuilder.rebuildTo(bill("BILL-2"), closed));
+        assertTrue(receiptStore.exists("BILL-2"));
+    }
+
+    // The receipt is stored and the single-flight future completed before the first caller's client is written
+    @Test
+    void stalledClientDoesNotHoldUpTheStoreOrOtherCallers() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream stalled = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return rebuilder.rebuildTo(bill("BILL-4"), stalled);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(receiptStore.exists("BILL-4"));
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        assertTrue(rebuilder.rebuildTo(bill("BILL-4"), second));
+        assertArrayEquals(receiptStore.read("BILL-4"), second.toByteArray());
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void unrenderableBillWritesNothing() throws Exception {
+        Bill bill = bill("BILL-3");
+        bill.setProductDetails("not json");
+        ByteArrayOutputStream client = new ByteArrayOutputStream();
+        assertFalse(rebuilder.rebuildTo(bill, client));
+        assertFalse(receiptStore.exists("BILL-3"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.inn.cafe.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReceiptRenderPoolTest {
+
+    private ReceiptRenderPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ReceiptRenderPool();
+        ReflectionTestUtils.setField(pool, "poolSize", 1);
+        ReflectionTestUtils.setField(pool, "queueCapacity", 10);
+        ReflectionTestUtils.setField(pool, "failedTtlMillis", 60_000L);
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pool.shutdown();
+    }
+
+    @Test
+    void failuresAreForgottenAfterTheirTtl() throws InterruptedException {
+        fail("BILL-1");
+        assertEquals(ReceiptRenderPool.FAILED, pool.getStatus("BILL-1"));
+        // Failed is not pending, so the reconciler may retry it
+        assertFalse(pool.isPending("BILL-1"));
+
+        pool.purgeFailures();
+        assertEquals(ReceiptRenderPool.FAILED, pool.getStatus("BILL-1"));
+        ReflectionTestUtils.setField(pool, "failedTtlMillis", 0L);
+        Thread.sleep(5);
+        pool.purgeFailures();
+        assertNull(pool.getStatus("BILL-1"));
+    }
+
+    @Test
+    void aLaterRenderClearsTheFailure() throws InterruptedException {
+        fail("BILL-2");
+        pool.clearFailure("BILL-2");
+        assertNull(pool.getStatus("BILL-2"));
+
+        fail("BILL-3");
+        assertTrue(pool.submit("BILL-3", () -> { }));
+        waitUntilFinished("BILL-3");
+        assertNull(pool.getStatus("BILL-3"));
+    }
+
+    private void fail(String uuid) throws InterruptedException {
+        assertTrue(pool.submit(uuid, () -> {
+            throw new IllegalStateException("no fonts");
+        }));
+        waitUntilFinished(uuid);
+    }
+
+    private void waitUntilFinished(String uuid) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.isPending(uuid)) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+}
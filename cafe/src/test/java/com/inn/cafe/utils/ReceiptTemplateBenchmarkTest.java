@@ -0,0 +1,53 @@
+package com.inn.cafe.utils;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+// Compares the shared ReceiptTemplate with the way bills were rendered before, where fonts, header
+// cells and the border were rebuilt for every bill. Prints bills/sec and bytes allocated per bill.
+// Only runs with -Pbenchmark, ReceiptTemplateTest checks both render the same receipt.
+@Tag("benchmark")
+class ReceiptTemplateBenchmarkTest {
+
+    private static final int WARMUP = 200;
+    private static final int BILLS = 1000;
+
+    private interface Renderer {
+        void render(Map<String, Object> requestMap, OutputStream outputStream) throws Exception;
+    }
+
+    @Test
+    void templateRendersWithLessWork() throws Exception {
+        Map<String, Object> requestMap = ReceiptTemplateTest.sampleBill(10);
+        ReceiptTemplate template = new ReceiptTemplate();
+
+        double[] before = measure(ReceiptTemplateTest::renderLegacy, requestMap);
+        double[] after = measure(template::render, requestMap);
+        System.out.printf("legacy   : %.0f bills/sec, %.0f bytes allocated per bill%n", before[0], before[1]);
+        System.out.printf("template : %.0f bills/sec, %.0f bytes allocated per bill%n", after[0], after[1]);
+    }
+
+    private static double[] measure(Renderer renderer, Map<String, Object> requestMap) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+        for (int i = 0; i < WARMUP; i++) {
+            outputStream.reset();
+            renderer.render(requestMap, outputStream);
+        }
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < BILLS; i++) {
+            outputStream.reset();
+            renderer.render(requestMap, outputStream);
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        return new double[]{BILLS * 1_000_000_000.0 / elapsed, (double) allocated / BILLS};
+    }
+}
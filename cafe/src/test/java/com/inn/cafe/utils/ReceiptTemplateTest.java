@@ -0,0 +1,138 @@
+package com.inn.cafe.utils;
+
+import com.itextpdf.text.BaseColor;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.FontFactory;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.json.JSONArray;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The shared ReceiptTemplate has to render the same receipt as the code it replaced, kept here as renderLegacy
+class ReceiptTemplateTest {
+
+    @Test
+    void templateMatchesTheLegacyReceipt() throws Exception {
+        ReceiptTemplate template = new ReceiptTemplate();
+        for (int items : new int[]{1, 10, 60}) {
+            Map<String, Object> requestMap = sampleBill(items);
+            ByteArrayOutputStream legacy = new ByteArrayOutputStream();
+            renderLegacy(requestMap, legacy);
+            ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+            template.render(requestMap, rendered);
+
+            try (PDDocument expected = PDDocument.load(legacy.toByteArray());
+                 PDDocument actual = PDDocument.load(rendered.toByteArray())) {
+                assertEquals(expected.getNumberOfPages(), actual.getNumberOfPages());
+                String text = new PDFTextStripper().getText(actual);
+                assertEquals(new PDFTextStripper().getText(expected), text);
+                assertTrue(text.contains("Coffee " + (items - 1)));
+            }
+        }
+    }
+
+    // A shared template must not carry anything over from one bill to the next
+    @Test
+    void renderingTwiceGivesTheSameText() throws Exception {
+        ReceiptTemplate template = new ReceiptTemplate();
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        template.render(sampleBill(3), first);
+        template.render(sampleBill(5), new ByteArrayOutputStream());
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        template.render(sampleBill(3), second);
+        try (PDDocument a = PDDocument.load(first.toByteArray()); PDDocument b = PDDocument.load(second.toByteArray())) {
+            assertEquals(new PDFTextStripper().getText(a), new PDFTextStripper().getText(b));
+        }
+    }
+
+    static Map<String, Object> sampleBill(int items) {
+        StringBuilder details = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                details.append(',');
+            }
+            details.append("{\"id\":").append(i).append(",\"name\":\"Coffee ").append(i)
+                    .append("\",\"category\":\"Drinks\",\"quantity\":\"2\",\"price\":120,\"total\":240}");
+        }
+        details.append(']');
+        Map<String, Object> requestMap = new HashMap<>();
+        requestMap.put("name", "Test Customer");
+        requestMap.put("contactNumber", "0700000000");
+        requestMap.put("email", "test@example.com");
+        requestMap.put("paymentMethod", "Cash");
+        requestMap.put("totalAmount", String.valueOf(items * 240));
+        requestMap.put("productDetails", details.toString());
+        return requestMap;
+    }
+
+    // The rendering code as it was before ReceiptTemplate, kept here as the baseline
+    static void renderLegacy(Map<String, Object> requestMap, OutputStream outputStream) throws Exception {
+        String data = "Name: " + requestMap.get("name") + "\n" + "Contact Number: " + requestMap.get("contactNumber") +
+                "\n" + "Email: " + requestMap.get("email") + "\n" + "Payment Method: " + requestMap.get("paymentMethod");
+        Document document = new Document();
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        writer.setCloseStream(false);
+        document.open();
+        Rectangle rect = new Rectangle(577, 825, 18, 15);
+        rect.enableBorderSide(1);
+        rect.enableBorderSide(2);
+        rect.enableBorderSide(4);
+        rect.enableBorderSide(8);
+        rect.setBorderColor(BaseColor.BLACK);
+        rect.setBorderWidth(1);
+        document.add(rect);
+        Paragraph chunk = new Paragraph("Cafe Management System", legacyFont("Header"));
+        chunk.setAlignment(Element.ALIGN_CENTER);
+        document.add(chunk);
+        document.add(new Paragraph(data + "\n \n ", legacyFont("Data")));
+        PdfPTable table = new PdfPTable(5);
+        Stream.of("Name", "Category", "Quantity", "Price", "Sub Total").forEach(columnTitle -> {
+            PdfPCell header = new PdfPCell();
+            header.setBackgroundColor(BaseColor.LIGHT_GRAY);
+            header.setBorderWidth(2);
+            header.setPhrase(new Phrase(columnTitle));
+            header.setBackgroundColor(BaseColor.YELLOW);
+            header.setHorizontalAlignment(Element.ALIGN_CENTER);
+            header.setVerticalAlignment(Element.ALIGN_CENTER);
+            table.addCell(header);
+        });
+        JSONArray jsonArray = CafeUtils.getJsonArrayFromString((String) requestMap.get("productDetails"));
+        for (int i = 0; i < jsonArray.length(); i++) {
+            Map<String, Object> item = CafeUtils.getMapFromJson(jsonArray.getString(i));
+            table.addCell((String) item.get("name"));
+            table.addCell((String) item.get("category"));
+            table.addCell((String) item.get("quantity"));
+            table.addCell(Double.toString((Double) item.get("price")));
+            table.addCell(Double.toString((Double) item.get("total")));
+        }
+        document.add(table);
+        document.add(new Paragraph("Total: " + requestMap.get("totalAmount") + "\n"
+                + "Thank you for visiting. Please visit again!!", legacyFont("Data")));
+        document.close();
+    }
+
+    private static Font legacyFont(String type) {
+        Font font = "Header".equals(type)
+                ? FontFactory.getFont(FontFactory.HELVETICA_BOLDOBLIQUE, 18, BaseColor.BLACK)
+                : FontFactory.getFont(FontFactory.TIMES_ROMAN, 11, BaseColor.BLACK);
+        font.setStyle(Font.BOLD);
+        return font;
+    }
+}
@@ -0,0 +1,198 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.POJO.Bill;
+import com.inn.cafe.POJO.BillItem;
+import com.inn.cafe.dao.SalesRollupJdbcDao;
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SalesRollupsTest {
+
+    // Stands in for the sales_rollup table: upserts add up per key, queries group by bucket and payment method
+    private static class InMemoryRollupDao extends SalesRollupJdbcDao {
+        final Map<List<Object>, double[]> table = new HashMap<>();
+        boolean failNextUpsert;
+        boolean down;
+        int upserts;
+
+        @Override
+        public void upsert(List<Object[]> rows) {
+            upserts++;
+            if (failNextUpsert || down) {
+                failNextUpsert = false;
+                throw new IllegalStateException("database is down");
+            }
+            // Like the real table: the column is 50 characters and the whole batch is rolled back
+            for (Object[] row : rows) {
+                if (((String) row[4]).length() > 50 || row[3].equals(666)) {
+                    throw new DataIntegrityViolationException("Data too long for column 'paymentmethod'");
+                }
+            }
+            for (Object[] row : rows) {
+                double[] total = table.computeIfAbsent(List.of(row[0], row[1], row[2], row[3], row[4]), k -> new double[2]);
+                total[0] += ((Number) row[5]).doubleValue();
+                total[1] += ((Number) row[6]).doubleValue();
+            }
+        }
+
+        @Override
+        public List<Object[]> query(String granularity, LocalDateTime from, LocalDateTime to, String groupBy) {
+            Map<List<Object>, double[]> grouped = new HashMap<>();
+            table.forEach((key, total) -> {
+                LocalDateTime bucket = ((Timestamp) key.get(1)).toLocalDateTime();
+                if (key.get(0).equals(granularity) && !bucket.isBefore(from) && bucket.isBefore(to)) {
+                    double[] sum = grouped.computeIfAbsent(List.of(bucket, key.get(4)), k -> new double[2]);
+                    sum[0] += total[0];
+                    sum[1] += total[1];
+                }
+            });
+            List<Object[]> rows = new ArrayList<>();
+            grouped.forEach((key, sum) -> rows.add(new Object[]{key.get(0), key.get(1), (long) sum[0], sum[1]}));
+            return rows;
+        }
+    }
+
+    private SalesRollups rollups;
+    private InMemoryRollupDao dao;
+
+    @BeforeEach
+    void setUp() {
+        dao = new InMemoryRollupDao();
+        rollups = new SalesRollups();
+        rollups.salesRollupJdbcDao = dao;
+        ReflectionTestUtils.setField(rollups, "maxFlushAttempts", 60);
+    }
+
+    @Test
+    void queriesCombineFlushedAndPendingSales() {
+        rollups.record(bill("Cash"), List.of(item(1, 2, 10.0), item(2, 1, 5.0)));
+        rollups.flush();
+        rollups.record(bill("Cash"), List.of(item(1, 1, 5.0)));
+        rollups.record(bill("Card"), List.of(item(1, 3, 15.0)));
+
+        List<Map<String, Object>> sales = query();
+        assertEquals(2, sales.size());
+        // Highest revenue first
+        assertEquals("Cash", sales.get(0).get("paymentMethod"));
+        assertEquals(4L, sales.get(0).get("quantity"));
+        assertEquals(20.0, sales.get(0).get("revenue"));
+        assertEquals("Card", sales.get(1).get("paymentMethod"));
+        assertEquals(15.0, sales.get(1).get("revenue"));
+
+        // Flushing moves the deltas to the table without changing the answer
+        rollups.flush();
+        assertEquals(sales, query());
+    }
+
+    @Test
+    void deletedBillIsTakenBackOut() {
+        Bill kept = bill("Cash");
+        Bill deleted = bill("Cash");
+        rollups.record(kept, List.of(item(1, 2, 10.0)));
+        rollups.record(deleted, List.of(item(1, 1, 5.0), item(2, 3, 6.0)));
+        rollups.flush();
+
+        BillItem line1 = new BillItem();
+        line1.setProductId(1);
+        line1.setCategoryId(1);
+        line1.setQuantity(1);
+        line1.setSubtotal(5.0);
+        BillItem line2 = new BillItem();
+        line2.setProductId(2);
+        line2.setCategoryId(1);
+        line2.setQuantity(3);
+        line2.setSubtotal(6.0);
+        rollups.remove(deleted, List.of(line1, line2));
+        assertEquals(2L, query().get(0).get("quantity"));
+        assertEquals(10.0, query().get(0).get("revenue"));
+        rollups.flush();
+        assertEquals(10.0, query().get(0).get("revenue"));
+    }
+
+    @Test
+    void failedFlushKeepsTheDeltas() {
+        rollups.record(bill("Cash"), List.of(item(1, 2, 10.0)));
+        dao.failNextUpsert = true;
+        rollups.flush();
+        assertEquals(10.0, query().get(0).get("revenue"));
+        rollups.flush();
+        assertEquals(10.0, query().get(0).get("revenue"));
+    }
+
+    @Test
+    void oversizedPaymentMethodIsCutToTheColumn() {
+        String longMethod = "Gift card " + "x".repeat(200);
+        rollups.record(bill(longMethod), List.of(item(1, 2, 10.0)));
+        rollups.record(bill("Cash"), List.of(item(1, 1, 5.0)));
+        rollups.flush();
+
+        assertEquals(2, query().size());
+        assertEquals(longMethod.substring(0, 50), query().get(0).get("paymentMethod"));
+        // Everything reached the table, nothing is left to flush
+        int upserts = dao.upserts;
+        rollups.flush();
+        assertEquals(upserts, dao.upserts);
+    }
+
+    @Test
+    void rowsTheTableRejectsAreDroppedAndDoNotBlockTheOthers() {
+        rollups.record(bill("Cash"), List.of(item(1, 2, 10.0), item(666, 1, 99.0)));
+        rollups.flush();
+
+        assertEquals(10.0, query().get(0).get("revenue"));
+        int upserts = dao.upserts;
+        rollups.flush();
+        assertEquals(upserts, dao.upserts);
+        rollups.record(bill("Cash"), List.of(item(1, 1, 5.0)));
+        rollups.flush();
+        assertEquals(15.0, query().get(0).get("revenue"));
+    }
+
+    @Test
+    void deltasAreDroppedAfterTooManyFailedFlushes() {
+        ReflectionTestUtils.setField(rollups, "maxFlushAttempts", 3);
+        rollups.record(bill("Cash"), List.of(item(1, 2, 10.0)));
+        dao.down = true;
+        rollups.flush();
+        rollups.flush();
+        assertEquals(10.0, query().get(0).get("revenue"));
+        rollups.flush();
+        dao.down = false;
+        assertTrue(query().isEmpty());
+    }
+
+    private List<Map<String, Object>> query() {
+        LocalDateTime today = SalesRollups.bucketStart(SalesRollups.DAY, LocalDateTime.now());
+        return rollups.query(SalesRollups.DAY, today, today.plusDays(1), "paymentMethod");
+    }
+
+    private static Bill bill(String paymentMethod) {
+        Bill bill = new Bill();
+        bill.setPaymentMethod(paymentMethod);
+        bill.setCreatedAt(Instant.now());
+        return bill;
+    }
+
+    private static BillItemWrapper item(int productId, int quantity, double total) {
+        BillItemWrapper item = new BillItemWrapper();
+        item.setId(productId);
+        item.setCategoryId(1);
+        item.setQuantity(quantity);
+        item.setTotal(total);
+        return item;
+    }
+}
@@ -0,0 +1,137 @@
+package com.inn.cafe.utils;
+
+import com.inn.cafe.wrapper.BillItemWrapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Compares the sketch with exact counts on a skewed stream like real sales: a few products sell a lot,
+// most of the menu hardly at all
+class SpaceSavingTest {
+
+    private static final int PRODUCTS = 5000;
+    private static final int LINES = 200_000;
+    private static final int CAPACITY = 200;
+    private static final int K = 10;
+
+    @Test
+    void topTenMatchesExactCountsWithinTheErrorBounds() {
+        Random random = new Random(42);
+        double[] cumulative = zipf(PRODUCTS, 1.1);
+        SpaceSaving<Integer> sketch = new SpaceSaving<>(CAPACITY);
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int i = 0; i < LINES; i++) {
+            int product = sample(cumulative, random);
+            int quantity = 1 + random.nextInt(3);
+            sketch.offer(product, quantity);
+            exact.merge(product, (long) quantity, Long::sum);
+        }
+
+        long total = exact.values().stream().mapToLong(Long::longValue).sum();
+        assertEquals(total, sketch.getTotal());
+        assertTrue(sketch.getMaxError() <= total / CAPACITY);
+
+        List<SpaceSaving.Counter<Integer>> top = sketch.top(K);
+        for (SpaceSaving.Counter<Integer> counter : top) {
+            long actual = exact.get(counter.getKey());
+            assertTrue(counter.getCount() - counter.getError() <= actual, "lower bound of " + counter.getKey());
+            assertTrue(actual <= counter.getCount(), "upper bound of " + counter.getKey());
+        }
+        List<Integer> exactTop = exact.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(K).map(Map.Entry::getKey).collect(Collectors.toList());
+        List<Integer> sketchTop = top.stream().map(SpaceSaving.Counter::getKey).collect(Collectors.toList());
+        assertEquals(exactTop, sketchTop);
+        // On a skewed stream the error is far below the worst case of total / capacity (about 0.26% of the
+        // total today against 0.5%), and small next to the counts of the top sellers
+        assertTrue(sketch.getMaxError() * 300 <= total, "max error " + sketch.getMaxError() + " of " + total);
+        for (SpaceSaving.Counter<Integer> counter : top) {
+            assertTrue(counter.getCount() - exact.get(counter.getKey()) <= counter.getCount() / 10,
+                    "overcount of " + counter.getKey());
+        }
+    }
+
+    @Test
+    void mergedSlotsKeepTheBounds() {
+        Random random = new Random(7);
+        double[] cumulative = zipf(PRODUCTS, 1.1);
+        List<SpaceSaving<Integer>> slots = new ArrayList<>();
+        Map<Integer, Long> exact = new HashMap<>();
+        for (int s = 0; s < 12; s++) {
+            SpaceSaving<Integer> slot = new SpaceSaving<>(CAPACITY);
+            for (int i = 0; i < LINES / 12; i++) {
+                int product = sample(cumulative, random);
+                slot.offer(product, 1);
+                exact.merge(product, 1L, Long::sum);
+            }
+            slots.add(slot);
+        }
+        SpaceSaving<Integer> merged = SpaceSaving.merge(slots, CAPACITY);
+        for (SpaceSaving.Counter<Integer> counter : merged.top(K)) {
+            long actual = exact.get(counter.getKey());
+            assertTrue(counter.getCount() - counter.getError() <= actual);
+            assertTrue(actual <= counter.getCount());
+        }
+        // Anything the merged sketch does not track sold at most maxError
+        Set<Integer> tracked = merged.top(CAPACITY).stream().map(SpaceSaving.Counter::getKey).collect(Collectors.toSet());
+        exact.forEach((product, count) -> {
+            if (!tracked.contains(product)) {
+                assertTrue(count <= merged.getMaxError(), "untracked " + product);
+            }
+        });
+    }
+
+    @Test
+    void hourWindowForgetsOldSlots() {
+        AtomicLong now = new AtomicLong(TimeUnit.DAYS.toMillis(20_000));
+        TopSellers topSellers = new TopSellers(CAPACITY, now::get);
+        topSellers.record(List.of(item(1, 5)));
+        now.addAndGet(TimeUnit.MINUTES.toMillis(30));
+        topSellers.record(List.of(item(2, 3)));
+        assertEquals(8, topSellers.sketch(TopSellers.HOUR, TopSellers.PRODUCT).getTotal());
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(40));
+        SpaceSaving<Integer> hour = topSellers.sketch(TopSellers.HOUR, TopSellers.PRODUCT);
+        assertEquals(3, hour.getTotal());
+        assertEquals(2, hour.top(1).get(0).getKey());
+    }
+
+    private static BillItemWrapper item(int productId, int quantity) {
+        BillItemWrapper item = new BillItemWrapper();
+        item.setId(productId);
+        item.setCategoryId(1);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return index >= 0 ? index : -index - 1;
+    }
+}